@@ -0,0 +1,159 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+
+
+// Benchmarks of the evaluator, the move generator and the search on fixed positions.
+// Reports operations per second, allocated bytes per operation and searched positions per second,
+// so that a slower or more allocating change shows up before it is released.
+//
+// Build and run from the project directory:
+//   javac -d out src/*.java bench/*.java
+//   java -cp out Benchmark [name filter]
+// The JMH benchmarks of the jmh module measure the same operations with forked JVMs, this harness
+// needs nothing but the JDK and also counts the searched positions.
+public class Benchmark {
+
+	// Positions as moves in the order they were played, "x,y" separated by spaces.
+	// White plays first, like the AI does when it starts the game, and is to move in every position.
+	private static final String[][] POSITIONS = {
+		{"opening", "9,9 8,10 8,8 9,8 10,9 8,9"},
+		{"middlegame", "9,9 8,9 7,10 8,10 6,10 6,9 8,11 9,12 7,12 6,12 6,8 7,7 10,10 5,7 11,10 8,8 8,12 5,6 12,11 7,8"},
+		{"endgame", "9,9 8,8 7,9 7,8 9,10 10,10 8,10 11,9 12,10 9,8 9,7 7,10 12,8 11,10 13,8 9,6 12,9 6,7 8,7 10,5 " +
+				"11,8 10,8 5,6 7,6 8,11 10,6 11,7 13,10 8,6 12,7 4,7 6,9 9,4 4,5 11,4 8,3 9,2 4,8 5,4 4,3 3,4 6,6 10,3 9,3"},
+	};
+	private static final int BOARD_SIZE = 19;
+	private static final long WARMUP_NANOS = 1_000_000_000L;
+	private static final long MEASURE_NANOS = 3_000_000_000L;
+	// Transposition table of the search benchmarks, cleared before every search
+	private static final int TT_SIZE_MB = 4;
+
+	// Results are added up here, so that the JIT can not remove the benchmarked calls
+	private static volatile long sink;
+
+	// A benchmarked call. Fast calls are measured in batches, so that reading the clock does not
+	// dominate the result. setUp runs before every batch and is not measured.
+	private static abstract class Operation {
+		final int batchSize;
+		Operation(int batchSize) {
+			this.batchSize = batchSize;
+		}
+		void setUp() {
+		}
+		// returns: number of positions searched, 0 if the operation does not search
+		abstract long run();
+	}
+
+	public static void main(String[] args) {
+		String filter = args.length > 0 ? args[0] : "";
+		PrintStream out = System.out;
+		out.printf("%-40s %14s %12s %12s %10s %14s%n", "Benchmark", "ops/s", "ns/op", "B/op", "MB/s", "nodes/s");
+
+		for(String[] position : POSITIONS) {
+			final String name = position[0];
+			final Board board = createBoard(position[1]);
+			final boolean blacksTurn = false;
+			final int[] moves = new int[BOARD_SIZE * BOARD_SIZE];
+
+			run(out, filter, "evaluateBoardForWhite/" + name, new Operation(1000) {
+				long run() {
+					sink += (long)Minimax.evaluateBoardForWhite(board, blacksTurn);
+					return 0;
+				}
+			});
+			run(out, filter, "getScore/" + name, new Operation(1000) {
+				long run() {
+					sink += Minimax.getScore(board, false, blacksTurn);
+					return 0;
+				}
+			});
+			run(out, filter, "getScoreFullScan/" + name, new Operation(100) {
+				long run() {
+					sink += Minimax.getScoreFullScan(board, false, blacksTurn);
+					return 0;
+				}
+			});
+			run(out, filter, "generateMoves/" + name, new Operation(1000) {
+				long run() {
+					sink += board.generateMoves(moves);
+					return 0;
+				}
+			});
+			final ThreatSearch threatSearch = new ThreatSearch();
+			run(out, filter, "threatSearch/" + name, new Operation(1) {
+				long run() {
+					sink += threatSearch.findWinningMove(board, false);
+					return threatSearch.getNodeCount();
+				}
+			});
+			for(int depth=2; depth<=5; depth++) {
+				final int searchDepth = depth;
+				final Minimax ai = new Minimax(board, TT_SIZE_MB);
+				run(out, filter, "calculateNextMove/" + name + "/depth" + depth, new Operation(1) {
+					void setUp() {
+						ai.clearCache();
+					}
+					long run() {
+						int[] move = ai.calculateNextMove(searchDepth);
+						if(move != null) sink += move[0];
+						return ai.getLastEvaluationCount();
+					}
+				});
+			}
+		}
+	}
+
+	private static void run(PrintStream out, String filter, String name, Operation operation) {
+		if(!name.contains(filter)) return;
+		// The search logs every move, keep the report readable
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		try {
+			measure(operation, WARMUP_NANOS);
+			long[] result = measure(operation, MEASURE_NANOS);
+			long ops = result[0], nanos = result[1], bytes = result[2], nodes = result[3];
+			double seconds = nanos / 1e9;
+			out.printf("%-40s %14.1f %12.0f %12d %10.1f %14.0f%n", name, ops / seconds, (double)nanos / ops,
+					bytes / ops, bytes / seconds / (1 << 20), nodes / seconds);
+		} finally {
+			System.setOut(out);
+		}
+	}
+
+	// Runs the operation until the given time has been measured.
+	// returns: {operations, measured nanoseconds, allocated bytes, searched positions}
+	private static long[] measure(Operation operation, long duration) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		long ops = 0, nanos = 0, bytes = 0, nodes = 0;
+		while(nanos < duration) {
+			operation.setUp();
+			long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+			long start = System.nanoTime();
+			for(int i=0; i<operation.batchSize; i++) {
+				nodes += operation.run();
+			}
+			nanos += System.nanoTime() - start;
+			bytes += threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+			ops += operation.batchSize;
+		}
+		return new long[] {ops, nanos, bytes, nodes};
+	}
+
+	// returns: the moves of the position with the given name, see POSITIONS
+	static String getPositionMoves(String name) {
+		for(String[] position : POSITIONS) {
+			if(position[0].equals(name)) return position[1];
+		}
+		throw new IllegalArgumentException("Unknown position " + name);
+	}
+	static Board createBoard(String moves) {
+		Board board = new Board(BOARD_SIZE);
+		boolean black = false;
+		for(String move : moves.split(" ")) {
+			String[] position = move.split(",");
+			board.addStoneNoGUI(Integer.parseInt(position[0]), Integer.parseInt(position[1]), black);
+			black = !black;
+		}
+		return board;
+	}
+}
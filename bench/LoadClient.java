@@ -0,0 +1,112 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+// Load test of GameServer: plays many engine against engine games at the same time, one
+// connection per game, and reports the move throughput and latency.
+//
+// Build and run from the project directory, with the server running:
+//   javac -d out src/*.java bench/*.java
+//   java -cp out GameServer &
+//   java -cp out LoadClient [games] [depth] [board size] [port]
+public class LoadClient {
+
+	// How long to wait before repeating a request the server was too busy for
+	private static final long BUSY_RETRY_MS = 20;
+
+	public static void main(String[] args) throws InterruptedException {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		final int depth = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+		final int boardSize = args.length > 2 ? Integer.parseInt(args[2]) : 15;
+		final int port = args.length > 3 ? Integer.parseInt(args[3]) : GameServer.DEFAULT_PORT;
+
+		final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+		final AtomicInteger busyAnswers = new AtomicInteger();
+		final AtomicInteger failedGames = new AtomicInteger();
+		final CountDownLatch finished = new CountDownLatch(games);
+		long start = System.nanoTime();
+		for(int i=0; i<games; i++) {
+			new Thread(new Runnable() {
+				public void run() {
+					try {
+						playGame(port, boardSize, depth, latencies, busyAnswers);
+					} catch (IOException | RuntimeException e) {
+						failedGames.incrementAndGet();
+						System.err.println("Game failed: " + e);
+					} finally {
+						finished.countDown();
+					}
+				}
+			}, "load-client-" + i).start();
+		}
+		finished.await();
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		long[] sorted = new long[latencies.size()];
+		int i = 0;
+		for(long latency : latencies) sorted[i++] = latency;
+		Arrays.sort(sorted);
+		System.out.printf("games: %d failed: %d moves: %d busy answers: %d time: %.1f s%n",
+				games, failedGames.get(), sorted.length, busyAnswers.get(), seconds);
+		if(sorted.length > 0) {
+			System.out.printf("moves/s: %.1f latency ms p50: %.1f p95: %.1f p99: %.1f max: %.1f%n",
+					sorted.length / seconds, percentile(sorted, 50), percentile(sorted, 95),
+					percentile(sorted, 99), sorted[sorted.length - 1] / 1e6);
+		}
+	}
+
+	private static void playGame(int port, int boardSize, int depth, ConcurrentLinkedQueue<Long> latencies,
+			AtomicInteger busyAnswers) throws IOException {
+		try(Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+			socket.setTcpNoDelay(true);
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+			Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII));
+			String game = request(in, out, "NEW " + boardSize + " " + depth, busyAnswers).split(" ")[1];
+			while(true) {
+				long moveStart = System.nanoTime();
+				String answer = request(in, out, "MOVE " + game, busyAnswers);
+				latencies.add(System.nanoTime() - moveStart);
+				String[] parts = answer.split(" ");
+				if(!parts[0].equals("MOVE") || !parts[3].equals("0")) break;
+			}
+			request(in, out, "END " + game, busyAnswers);
+			out.write("QUIT\n");
+			out.flush();
+		}
+	}
+
+	// Sends a command, repeating it while the server is busy.
+	private static String request(BufferedReader in, Writer out, String command, AtomicInteger busyAnswers) throws IOException {
+		while(true) {
+			out.write(command);
+			out.write('\n');
+			out.flush();
+			String answer = in.readLine();
+			if(answer == null) throw new IOException("Connection closed");
+			if(answer.startsWith("ERROR")) throw new IOException(command + ": " + answer);
+			if(!answer.startsWith("BUSY")) return answer;
+			busyAnswers.incrementAndGet();
+			try {
+				Thread.sleep(BUSY_RETRY_MS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted");
+			}
+		}
+	}
+
+	private static double percentile(long[] sorted, int percent) {
+		return sorted[Math.min(sorted.length - 1, sorted.length * percent / 100)] / 1e6;
+	}
+}
@@ -0,0 +1,244 @@
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+// Plays engine variant A against variant B on all cores to check that a change keeps the strength.
+// Games are played in pairs from the same random opening, with A playing black in one and white
+// in the other. Only openings that the evaluation scores about even are used. A sequential probability ratio test (SPRT) stops the match as soon as the results
+// show that A is at least elo1 stronger than B (H1), or not stronger than elo0 (H0).
+// Every finished game prints the standings: wins/draws/losses of A, Elo of A with its 95% interval,
+// the log likelihood ratio of the SPRT and the average time per move of both variants.
+//
+// Build and run from the project directory:
+//   javac -d out src/*.java bench/*.java
+//   java -cp out SelfPlay <variant A> <variant B> [max games] [board size] [threads] [elo0] [elo1]
+// Variants are comma separated settings, e.g. "depth=4" or "time=100,tt=8,vcf=10,vct=0":
+//   depth: search depth, time: time budget per move in ms (used instead of the depth if set),
+//   tt: transposition table size in MB, vcf/vct: depth limits of the threat search,
+//   candidates/lmr: candidate limit and late move index of the selective search (0 for none),
+//   mcts: 1 plays with Monte Carlo tree search, depth then sets the number of playouts
+public class SelfPlay {
+
+	// Stones of the random openings, placed near the center
+	private static final int OPENING_STONES = 4;
+	private static final int OPENING_AREA = 7;
+	// Openings are kept if the score of white over black (Minimax.evaluateBoardForWhite) is within
+	// this factor of 1. About 3 of 4 random openings are.
+	private static final double MAX_OPENING_IMBALANCE = 1.25;
+	// Error probabilities of the SPRT
+	private static final double ALPHA = 0.05;
+	private static final double BETA = 0.05;
+
+	private static class Variant {
+		final String description;
+		int depth = 3;
+		long timeBudgetMs = 0;
+		int ttSizeMB = 4;
+		int vcfDepth = ThreatSearch.DEFAULT_VCF_DEPTH;
+		int vctDepth = ThreatSearch.DEFAULT_VCT_DEPTH;
+		int candidateLimit = 0;
+		int lateMoveIndex = 0;
+		boolean monteCarlo = false;
+
+		Variant(String description) {
+			this.description = description;
+			for(String setting : description.split(",")) {
+				String[] parts = setting.split("=");
+				if(parts.length != 2) throw new IllegalArgumentException("Invalid setting " + setting);
+				int value = Integer.parseInt(parts[1].trim());
+				switch(parts[0].trim()) {
+				case "depth": depth = value; break;
+				case "time": timeBudgetMs = value; break;
+				case "tt": ttSizeMB = value; break;
+				case "vcf": vcfDepth = value; break;
+				case "vct": vctDepth = value; break;
+				case "candidates": candidateLimit = value; break;
+				case "lmr": lateMoveIndex = value; break;
+				case "mcts": monteCarlo = value != 0; break;
+				default: throw new IllegalArgumentException("Unknown setting " + parts[0]);
+				}
+			}
+		}
+		GomokuEngine createEngine() {
+			GomokuEngine engine = new GomokuEngine(ttSizeMB, 1);
+			engine.setDepth(depth);
+			engine.setTimeBudget(timeBudgetMs);
+			engine.setThreatSearchDepth(vcfDepth, vctDepth);
+			engine.setSelectiveSearch(new SelectiveSearch(candidateLimit, SelectiveSearch.DEFAULT_PRUNING_PLY,
+					lateMoveIndex, SelectiveSearch.DEFAULT_REDUCTION_DEPTH));
+			engine.setMonteCarlo(monteCarlo);
+			engine.setLogging(false);
+			return engine;
+		}
+	}
+
+	// Results of A, updated by all threads under the lock of the SelfPlay instance
+	private int wins, draws, losses;
+	private final long[] moveNanos = new long[2]; // [0] -> A, [1] -> B
+	private final long[] moveCounts = new long[2];
+	private boolean stopped;
+
+	private final Variant variantA, variantB;
+	private final int boardSize;
+	private final double elo0, elo1;
+
+	private SelfPlay(Variant variantA, Variant variantB, int boardSize, double elo0, double elo1) {
+		this.variantA = variantA;
+		this.variantB = variantB;
+		this.boardSize = boardSize;
+		this.elo0 = elo0;
+		this.elo1 = elo1;
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		if(args.length < 2) {
+			System.out.println("Usage: SelfPlay <variant A> <variant B> [max games] [board size] [threads] [elo0] [elo1]");
+			return;
+		}
+		Variant variantA = new Variant(args[0]);
+		Variant variantB = new Variant(args[1]);
+		int maxGames = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+		int boardSize = args.length > 3 ? Integer.parseInt(args[3]) : 15;
+		int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+		double elo0 = args.length > 5 ? Double.parseDouble(args[5]) : 0;
+		double elo1 = args.length > 6 ? Double.parseDouble(args[6]) : 20;
+		System.out.println("A: " + variantA.description + "  B: " + variantB.description + "  SPRT elo0=" + elo0 + " elo1=" + elo1);
+		new SelfPlay(variantA, variantB, boardSize, elo0, elo1).run(maxGames, threads);
+	}
+
+	public void run(final int maxGames, int threads) throws InterruptedException {
+		final AtomicInteger nextPair = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		for(int t=0; t<threads; t++) {
+			pool.execute(new Runnable() {
+				public void run() {
+					// Engines are reused for all games of a thread
+					GomokuEngine engineA = variantA.createEngine();
+					GomokuEngine engineB = variantB.createEngine();
+					int pair;
+					while((pair = nextPair.getAndIncrement()) * 2 < maxGames && !isStopped()) {
+						int[] opening = createOpening(new Random(pair));
+						for(int game=0; game<2; game++) {
+							boolean aIsBlack = game == 0;
+							int winner = playGame(engineA, engineB, aIsBlack, opening);
+							if(winner == 0) addResult(0);
+							else addResult((winner == 2) == aIsBlack ? 1 : -1);
+						}
+					}
+				}
+			});
+		}
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+	}
+
+	// Random stones near the center, black first. Openings are drawn until one is balanced: a
+	// player with a clear advantage would win both games of the pair and hide the difference
+	// between the variants.
+	// returns: the stones as y*boardSize+x
+	private int[] createOpening(Random random) {
+		int[] opening = new int[OPENING_STONES];
+		int start = (boardSize - OPENING_AREA) / 2;
+		while(true) {
+			Board board = new Board(boardSize);
+			for(int i=0; i<opening.length; i++) {
+				int cell;
+				do {
+					cell = (start + random.nextInt(OPENING_AREA)) * boardSize + start + random.nextInt(OPENING_AREA);
+				} while(contains(opening, i, cell));
+				opening[i] = cell;
+				board.addStoneNoGUI(cell % boardSize, cell / boardSize, i % 2 == 0);
+			}
+			double score = Minimax.evaluateBoardForWhite(board, opening.length % 2 == 0);
+			if(score <= MAX_OPENING_IMBALANCE && score >= 1 / MAX_OPENING_IMBALANCE) return opening;
+		}
+	}
+
+	// returns: 0 -> draw, 1 -> white wins, 2 -> black wins
+	private int playGame(GomokuEngine engineA, GomokuEngine engineB, boolean aIsBlack, int[] opening) {
+		engineA.newGame(boardSize);
+		engineB.newGame(boardSize);
+		for(int cell : opening) {
+			engineA.play(cell % boardSize, cell / boardSize);
+			engineB.play(cell % boardSize, cell / boardSize);
+		}
+		while(!engineA.isGameOver()) {
+			boolean aToMove = engineA.isBlacksTurn() == aIsBlack;
+			GomokuEngine engine = aToMove ? engineA : engineB;
+			long start = System.nanoTime();
+			int[] move = engine.bestMove();
+			addMoveTime(aToMove ? 0 : 1, System.nanoTime() - start);
+			if(move == null) break;
+			engineA.play(move[1], move[0]);
+			engineB.play(move[1], move[0]);
+		}
+		return engineA.getWinner();
+	}
+
+	private synchronized boolean isStopped() {
+		return stopped;
+	}
+	private synchronized void addMoveTime(int variant, long nanos) {
+		moveNanos[variant] += nanos;
+		moveCounts[variant]++;
+	}
+	// result: 1 -> A won, 0 -> draw, -1 -> A lost
+	private synchronized void addResult(int result) {
+		if(stopped) return;
+		if(result > 0) wins++;
+		else if(result < 0) losses++;
+		else draws++;
+
+		int games = wins + draws + losses;
+		double score = (wins + draws * 0.5) / games;
+		// Variance of the result of a single game
+		double variance = (wins * sq(1 - score) + draws * sq(0.5 - score) + losses * sq(score)) / games;
+		double error = 1.96 * Math.sqrt(variance / games);
+		double llr = logLikelihoodRatio(games, score, variance);
+		double lowerBound = Math.log(BETA / (1 - ALPHA));
+		double upperBound = Math.log((1 - BETA) / ALPHA);
+
+		System.out.printf("games: %d  W: %d D: %d L: %d  Elo: %.1f [%.1f, %.1f]  LLR: %.2f [%.2f, %.2f]  ms/move A: %.1f B: %.1f%n",
+				games, wins, draws, losses, elo(score), elo(score - error), elo(score + error),
+				llr, lowerBound, upperBound, averageMs(0), averageMs(1));
+		if(llr >= upperBound) {
+			System.out.println("H1 accepted: A is stronger than B by at least " + elo1 + " Elo");
+			stopped = true;
+		}
+		else if(llr <= lowerBound) {
+			System.out.println("H0 accepted: A is not stronger than B by more than " + elo0 + " Elo");
+			stopped = true;
+		}
+	}
+
+	// Log likelihood ratio of H1 against H0, with the normal approximation of the score
+	// distribution that is used by most engine testing frameworks.
+	private double logLikelihoodRatio(int games, double score, double variance) {
+		if(variance == 0) return 0;
+		double score0 = expectedScore(elo0);
+		double score1 = expectedScore(elo1);
+		return games * (score1 - score0) * (2 * score - score0 - score1) / (2 * variance);
+	}
+	private static double expectedScore(double elo) {
+		return 1 / (1 + Math.pow(10, -elo / 400));
+	}
+	private static double elo(double score) {
+		score = Math.min(Math.max(score, 1e-6), 1 - 1e-6);
+		return -400 * Math.log10(1 / score - 1);
+	}
+	private double averageMs(int variant) {
+		return moveCounts[variant] == 0 ? 0 : moveNanos[variant] / 1e6 / moveCounts[variant];
+	}
+	private static double sq(double x) {
+		return x * x;
+	}
+	private static boolean contains(int[] cells, int count, int cell) {
+		for(int i=0; i<count; i++) {
+			if(cells[i] == cell) return true;
+		}
+		return false;
+	}
+}
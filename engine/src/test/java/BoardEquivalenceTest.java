@@ -0,0 +1,215 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+
+// Checks the incremental board against plain scans of a cell matrix, like the board worked before
+// it kept its scores and candidate moves up to date: random stones are added and removed, and after
+// every change the scores, the candidate moves, the hash and the five detection must match.
+public class BoardEquivalenceTest {
+
+	private static final int SEQUENCES = 200;
+	private static final int STEPS = 120;
+
+	@Test
+	public void incrementalBoardMatchesFullScans() {
+		Random random = new Random(20261017);
+		for(int sequence=0; sequence<SEQUENCES; sequence++) {
+			int boardSize = 5 + random.nextInt(15);
+			Board board = new Board(boardSize);
+			int[][] matrix = new int[boardSize][boardSize]; // [y][x], 0: Empty 1: White 2: Black
+			for(int step=0; step<STEPS; step++) {
+				int posX = random.nextInt(boardSize);
+				int posY = random.nextInt(boardSize);
+				// Mostly add stones, so that the boards fill up, but remove some too
+				if(matrix[posY][posX] != 0 && random.nextInt(3) == 0) {
+					board.removeStoneNoGUI(posX, posY);
+					matrix[posY][posX] = 0;
+				}
+				else if(matrix[posY][posX] == 0) {
+					boolean black = random.nextBoolean();
+					board.addStoneNoGUI(posX, posY, black);
+					matrix[posY][posX] = black ? 2 : 1;
+				}
+				else continue;
+				String state = "sequence " + sequence + " step " + step;
+				assertMatches(board, matrix, state);
+			}
+		}
+	}
+
+	@Test
+	public void sparseBoardMatchesFullScans() {
+		Random random = new Random(64);
+		for(int sequence=0; sequence<10; sequence++) {
+			int boardSize = Board.MAX_DENSE_BOARD_SIZE + 1 + random.nextInt(80);
+			Board board = new Board(boardSize);
+			int[][] matrix = new int[boardSize][boardSize];
+			// Stones near the corners and around the 64th cell, where the words of a line meet
+			int[] areas = {0, Math.min(Board.MAX_DENSE_BOARD_SIZE - 6, boardSize - 12), boardSize - 12};
+			for(int step=0; step<300; step++) {
+				int posX = areas[random.nextInt(areas.length)] + random.nextInt(12);
+				int posY = areas[random.nextInt(areas.length)] + random.nextInt(12);
+				if(matrix[posY][posX] != 0) {
+					if(random.nextInt(3) != 0) continue;
+					board.removeStoneNoGUI(posX, posY);
+					matrix[posY][posX] = 0;
+				}
+				else {
+					boolean black = random.nextBoolean();
+					board.addStoneNoGUI(posX, posY, black);
+					matrix[posY][posX] = black ? 2 : 1;
+				}
+				if(step % 10 == 0) assertMatches(board, matrix, "sequence " + sequence + " step " + step);
+			}
+			assertMatches(board, matrix, "sequence " + sequence);
+			assertMatches(new Board(board), matrix, "copy of sequence " + sequence);
+			Board copy = new Board(boardSize);
+			copy.addStoneNoGUI(1, 1, true);
+			copy.copyStonesFrom(board);
+			assertMatches(copy, matrix, "stones copied from sequence " + sequence);
+		}
+	}
+
+	@Test
+	public void sparseBoardPlaysLikeDenseBoard() {
+		// Black has a four and an open three, white can only block the four
+		int[][] stones = {{7, 7, 2}, {8, 8, 1}, {8, 7, 2}, {9, 7, 2}, {10, 8, 1}, {6, 8, 1}, {10, 7, 2},
+				{11, 7, 1}, {7, 9, 2}, {7, 10, 2}, {9, 9, 1}, {6, 11, 1}};
+		int offset = 55; // The stones are around the 64th cell of the lines
+		Board dense = new Board(19), sparse = new Board(100);
+		for(int[] stone : stones) {
+			dense.addStoneNoGUI(stone[0], stone[1], stone[2] == 2);
+			sparse.addStoneNoGUI(stone[0] + offset, stone[1] + offset, stone[2] == 2);
+		}
+		for(int flags=0; flags<4; flags++) {
+			boolean forBlack = (flags & 1) != 0, blacksTurn = (flags & 2) != 0;
+			assertEquals(Minimax.getScore(dense, forBlack, blacksTurn), Minimax.getScore(sparse, forBlack, blacksTurn));
+		}
+		int[] denseMoves = new int[dense.getMoveBufferSize(0)];
+		int[] sparseMoves = new int[sparse.getMoveBufferSize(0)];
+		int count = dense.generateMoves(denseMoves);
+		assertEquals(count, sparse.generateMoves(sparseMoves));
+		for(int i=0; i<count; i++) {
+			assertEquals(translate(denseMoves[i], 19, 100, offset), sparseMoves[i]);
+		}
+		int winningMove = new ThreatSearch().findWinningMove(dense, true);
+		assertEquals(translate(winningMove, 19, 100, offset), new ThreatSearch().findWinningMove(sparse, true));
+		for(int i=0; i<count; i++) {
+			int denseMove = denseMoves[i], sparseMove = sparseMoves[i];
+			assertEquals(SelectiveSearch.getThreatRank(dense, denseMove % 19, denseMove / 19, false),
+					SelectiveSearch.getThreatRank(sparse, sparseMove % 100, sparseMove / 100, false));
+		}
+		// White to move, it has to block the four
+		Minimax denseAI = new Minimax(dense, 1), sparseAI = new Minimax(sparse, 1);
+		denseAI.setLogging(false);
+		sparseAI.setLogging(false);
+		int[] denseMove = denseAI.calculateNextMove(3);
+		int[] sparseMove = sparseAI.calculateNextMove(3);
+		assertArrayEquals(new int[] {denseMove[0] + offset, denseMove[1] + offset}, sparseMove);
+	}
+
+	@Test
+	public void copyMatchesOriginal() {
+		Random random = new Random(7);
+		Board board = new Board(15);
+		for(int i=0; i<60; i++) {
+			int posX = random.nextInt(15), posY = random.nextInt(15);
+			if(board.getCell(posX, posY) == 0) board.addStoneNoGUI(posX, posY, random.nextBoolean());
+		}
+		Board copy = new Board(board);
+		assertArrayEquals(board.getBoardMatrix(), copy.getBoardMatrix());
+		assertEquals(board.getZobristHash(), copy.getZobristHash());
+		for(int flags=0; flags<4; flags++) {
+			boolean forBlack = (flags & 1) != 0, blacksTurn = (flags & 2) != 0;
+			assertEquals(Minimax.getScore(board, forBlack, blacksTurn), Minimax.getScore(copy, forBlack, blacksTurn));
+		}
+	}
+
+	@Test
+	public void invalidChangesAreRejected() {
+		Board board = new Board(15);
+		board.addStoneNoGUI(7, 7, true);
+		long hash = board.getZobristHash();
+		assertThrows(AssertionError.class, () -> board.addStoneNoGUI(7, 7, false));
+		assertThrows(IllegalArgumentException.class, () -> board.addStoneNoGUI(15, 7, true));
+		assertThrows(IllegalArgumentException.class, () -> board.removeStoneNoGUI(-1, 7));
+		assertThrows(IllegalStateException.class, () -> board.removeStoneNoGUI(8, 7));
+		assertFalse(board.addStone(7, 7, false));
+		assertFalse(board.addStone(7, 15, false));
+		assertEquals(hash, board.getZobristHash());
+		assertEquals(2, board.getCell(7, 7));
+	}
+
+	private static void assertMatches(Board board, int[][] matrix, String state) {
+		int boardSize = matrix.length;
+		assertArrayEquals(matrix, board.getBoardMatrix(), state);
+		// Incremental scores against the scan of the matrix
+		for(int flags=0; flags<4; flags++) {
+			boolean forBlack = (flags & 1) != 0, blacksTurn = (flags & 2) != 0;
+			assertEquals(Minimax.getScoreFullScan(board, forBlack, blacksTurn), Minimax.getScore(board, forBlack, blacksTurn),
+					state + " forBlack " + forBlack + " blacksTurn " + blacksTurn);
+		}
+		// Candidate moves in the order of the matrix scan: row by row, empty cells next to a stone
+		int[] expected = new int[boardSize * boardSize];
+		int expectedCount = 0;
+		for(int y=0; y<boardSize; y++) {
+			for(int x=0; x<boardSize; x++) {
+				if(matrix[y][x] == 0 && hasNeighbor(matrix, x, y)) expected[expectedCount++] = y * boardSize + x;
+			}
+		}
+		int[] moves = new int[boardSize * boardSize];
+		int count = board.generateMoves(moves);
+		assertArrayEquals(Arrays.copyOf(expected, expectedCount), Arrays.copyOf(moves, count), state);
+		// Hash updated with the moves against the hash of the same stones placed on a new board
+		Board rebuilt = new Board(boardSize);
+		for(int y=0; y<boardSize; y++) {
+			for(int x=0; x<boardSize; x++) {
+				if(matrix[y][x] != 0) rebuilt.addStoneNoGUI(x, y, matrix[y][x] == 2);
+			}
+		}
+		assertEquals(rebuilt.getZobristHash(), board.getZobristHash(), state);
+		assertEquals(hasFive(matrix, 1), board.hasFive(false), state);
+		assertEquals(hasFive(matrix, 2), board.hasFive(true), state);
+	}
+
+	private static int translate(int move, int boardSize, int newBoardSize, int offset) {
+		if(move < 0) return move;
+		return (move / boardSize + offset) * newBoardSize + move % boardSize + offset;
+	}
+
+	private static boolean hasNeighbor(int[][] matrix, int posX, int posY) {
+		int boardSize = matrix.length;
+		for(int y=Math.max(0, posY - 1); y<=Math.min(boardSize - 1, posY + 1); y++) {
+			for(int x=Math.max(0, posX - 1); x<=Math.min(boardSize - 1, posX + 1); x++) {
+				if(matrix[y][x] != 0) return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean hasFive(int[][] matrix, int cell) {
+		int boardSize = matrix.length;
+		int[][] directions = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
+		for(int y=0; y<boardSize; y++) {
+			for(int x=0; x<boardSize; x++) {
+				for(int[] direction : directions) {
+					int count = 0;
+					while(count < 5) {
+						int cx = x + count * direction[0], cy = y + count * direction[1];
+						if(cx < 0 || cy < 0 || cx >= boardSize || cy >= boardSize || matrix[cy][cx] != cell) break;
+						count++;
+					}
+					if(count == 5) return true;
+				}
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,80 @@
+import gomoku.jmh.Workload;
+
+
+// Operations of the engine for the JMH benchmarks, on the positions of bench/Benchmark.
+// EngineBenchmark creates them by name with create.
+public class BenchmarkWorkloads {
+
+	// Transposition table of the search benchmarks, cleared before every search
+	private static final int TT_SIZE_MB = 4;
+
+	private BenchmarkWorkloads() {
+	}
+
+	// operation: evaluateBoardForWhite, getScore, getScoreFullScan, generateMoves, threatSearch
+	//            or calculateNextMove
+	// position: opening, middlegame or endgame
+	// depth: depth of calculateNextMove, not used by the other operations
+	public static Workload create(String operation, String position, final int depth) {
+		final Board board = Benchmark.createBoard(Benchmark.getPositionMoves(position));
+		// White is to move in every position
+		final boolean blacksTurn = false;
+		switch(operation) {
+		case "evaluateBoardForWhite":
+			return new Operation() {
+				public long run() {
+					return (long)Minimax.evaluateBoardForWhite(board, blacksTurn);
+				}
+			};
+		case "getScore":
+			return new Operation() {
+				public long run() {
+					return Minimax.getScore(board, false, blacksTurn);
+				}
+			};
+		case "getScoreFullScan":
+			return new Operation() {
+				public long run() {
+					return Minimax.getScoreFullScan(board, false, blacksTurn);
+				}
+			};
+		case "generateMoves":
+			final int[] moves = new int[board.getBoardSize() * board.getBoardSize()];
+			return new Operation() {
+				public long run() {
+					return board.generateMoves(moves);
+				}
+			};
+		case "threatSearch":
+			final ThreatSearch threatSearch = new ThreatSearch();
+			return new Operation() {
+				public long run() {
+					return threatSearch.findWinningMove(board, false);
+				}
+			};
+		case "calculateNextMove":
+			final Minimax ai = new Minimax(board, TT_SIZE_MB);
+			ai.setLogging(false);
+			return new Workload() {
+				public void setUp() {
+					ai.clearCache();
+				}
+				public long run() {
+					int[] move = ai.calculateNextMove(depth);
+					return move != null ? move[0] * board.getBoardSize() + move[1] : -1;
+				}
+				public long getNodeCount() {
+					return ai.getLastEvaluationCount();
+				}
+			};
+		default:
+			throw new IllegalArgumentException("Unknown operation " + operation);
+		}
+	}
+
+	// An operation that needs no preparation between calls
+	private abstract static class Operation implements Workload {
+		public void setUp() {
+		}
+	}
+}
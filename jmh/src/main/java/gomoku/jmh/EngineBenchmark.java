@@ -0,0 +1,94 @@
+package gomoku.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+// JMH benchmarks of the evaluator, the move generator, the threat search and the minimax search,
+// on the opening, middlegame and endgame positions of bench/Benchmark.
+// Results are operations per second, the searches also report the evaluated positions per second
+// (nodes). Allocations are reported with the GC profiler: java -jar jmh/target/benchmarks.jar -prof gc
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+
+	@State(Scope.Thread)
+	public static class Operation {
+		@Param({"evaluateBoardForWhite", "getScore", "getScoreFullScan", "generateMoves", "threatSearch"})
+		public String operation;
+		@Param({"opening", "middlegame", "endgame"})
+		public String position;
+		Workload workload;
+
+		@Setup(Level.Trial)
+		public void setUp() throws ReflectiveOperationException {
+			workload = create(operation, position, 0);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Search {
+		@Param({"opening", "middlegame", "endgame"})
+		public String position;
+		@Param({"2", "3", "4", "5"})
+		public int depth;
+		Workload workload;
+
+		@Setup(Level.Trial)
+		public void setUp() throws ReflectiveOperationException {
+			workload = create("calculateNextMove", position, depth);
+		}
+		// Every search starts from an empty transposition table. A search takes milliseconds,
+		// so preparing every call does not disturb the measurement.
+		@Setup(Level.Invocation)
+		public void clearCache() {
+			workload.setUp();
+		}
+	}
+
+	// Positions evaluated by the searches of an iteration, reported by JMH as a rate
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Nodes {
+		public long nodes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			nodes = 0;
+		}
+	}
+
+	@Benchmark
+	public long operation(Operation state) {
+		return state.workload.run();
+	}
+
+	@Benchmark
+	public long calculateNextMove(Search state, Nodes counters) {
+		long result = state.workload.run();
+		counters.nodes += state.workload.getNodeCount();
+		return result;
+	}
+
+	private static Workload create(String operation, String position, int depth) throws ReflectiveOperationException {
+		return (Workload)Class.forName("BenchmarkWorkloads")
+				.getMethod("create", String.class, String.class, int.class)
+				.invoke(null, operation, position, depth);
+	}
+}
@@ -0,0 +1,18 @@
+package gomoku.jmh;
+
+// An operation of the engine measured by EngineBenchmark. The classes of the engine are in the
+// unnamed package, which code in a package can not refer to, so the operations are implemented
+// there (see BenchmarkWorkloads) and reached through this interface.
+public interface Workload {
+
+	// Prepares the next call, e.g. clears the transposition table of a search. Not measured.
+	void setUp();
+
+	// returns: a result of the call, consumed by the benchmark so that the JIT can not remove it
+	long run();
+
+	// returns: positions evaluated by the last call of a search, 0 for the other operations
+	default long getNodeCount() {
+		return 0;
+	}
+}
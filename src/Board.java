@@ -1,134 +1,529 @@
-import java.awt.event.MouseListener;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.TreeSet;
 
 
 
 public class Board {
-	
-	private BoardGUI gui;
-	private int[][] boardMatrix; // 0: Empty 1: White 2: Black
-	
-	
-	public Board(int sideLength, int boardSize) {
-		gui = new BoardGUI(sideLength, boardSize);
-		boardMatrix = new int[boardSize][boardSize];
-		
-	}
-	// Fake copy constructor (only copies the boardMatrix)
+
+	// Line directions of the bitboards
+	public static final int HORIZONTAL = 0;
+	public static final int VERTICAL = 1;
+	public static final int DIAGONAL = 2; // From bottom-left to top-right
+	public static final int ANTI_DIAGONAL = 3; // From top-left to bottom-right
+	// Boards up to this size are dense: every line fits into a long. Larger boards are sparse.
+	public static final int MAX_DENSE_BOARD_SIZE = 64;
+	// Cells are numbered y*boardSize+x, and the search keeps arrays of a value per cell
+	public static final int MAX_BOARD_SIZE = 1024;
+	// getLineBits reads 64 cells of a line, which hold every five cell window that starts in the
+	// first LINE_CHUNK of them. A whole line is read in chunks of this many cells.
+	public static final int LINE_CHUNK = 60;
+
+	private BoardObserver observer; // Optional, e.g. the GUI that draws the board
+	private int boardSize;
+	// Stones are stored as bitboards, one bit per cell of a line: lines[0] -> White, lines[1] -> Black
+	// Every stone is stored 4 times, pre-rotated into its row, column and both diagonals,
+	// so that any line through a cell can be read with a single array access.
+	// Line index: rows first, then columns, then diagonals, then anti-diagonals.
+	// Bit index: x for rows, y for columns, y minus the first y of the line for the diagonals.
+	private long[][] lines;
+	private int[] lineLengths;
+	// Candidate moves are the empty cells next to at least one stone. They are kept up to date
+	// with the number of stones around every cell, so moves can be listed without scanning the board.
+	private byte[] neighborCounts; // Number of stones in the 8 cells around a cell, indexed as y*boardSize+x
+	private long[] candidateRows; // Bit x of row y is set if the cell is a candidate
+	private long candidateRowMask; // Bit y is set if row y has any candidates
+	// Sparse boards (larger than MAX_DENSE_BOARD_SIZE) only keep what is near the stones, so that
+	// their memory and the cost of every operation grow with the stones and not with the area.
+	// They are used instead of lines, neighborCounts and candidateRows:
+	// - lineWords: the bitboards of a line in words of 64 cells, indexed as [color][line][cell/64].
+	//   The words of a line are allocated with its first stone, lines never played on have none.
+	// - neighborCountMap: the neighbor counts of the cells next to stones, keyed by y*boardSize+x
+	// - candidateSet: the candidate moves ordered by y*boardSize+x, the order of a dense board
+	private final boolean sparse;
+	private long[][][] lineWords;
+	private HashMap<Integer, Integer> neighborCountMap;
+	private TreeSet<Integer> candidateSet;
+	private int stoneCount;
+	// Bit i is set if line i has any stones. Lines without stones can be skipped when looking for
+	// fives and threats, so that their cost grows with the stones and not with the board size.
+	private long[] occupiedLines;
+	private long zobristHash; // Hash of the stones on the board, updated with every added/removed stone
+	private IncrementalEvaluator evaluator; // Keeps the line scores of both players up to date
+
+
+	public Board(int boardSize) {
+		if(boardSize > MAX_BOARD_SIZE) {
+			throw new IllegalArgumentException("Board size can be at most " + MAX_BOARD_SIZE);
+		}
+		this.boardSize = boardSize;
+		sparse = boardSize > MAX_DENSE_BOARD_SIZE;
+		int lineCount = 2 * boardSize + 2 * (2 * boardSize - 1);
+		lineLengths = new int[lineCount];
+		for(int i=0; i<boardSize; i++) {
+			lineLengths[i] = boardSize;
+			lineLengths[boardSize + i] = boardSize;
+		}
+		for(int k=0; k<2*boardSize-1; k++) {
+			int length = k < boardSize ? k + 1 : 2 * boardSize - 1 - k;
+			lineLengths[2 * boardSize + k] = length;
+			// Anti-diagonals are indexed with y-x+boardSize-1, which gives the same lengths
+			lineLengths[4 * boardSize - 1 + k] = length;
+		}
+		if(sparse) {
+			lineWords = new long[2][lineCount][];
+			neighborCountMap = new HashMap<Integer, Integer>();
+			candidateSet = new TreeSet<Integer>();
+		}
+		else {
+			lines = new long[2][lineCount];
+			neighborCounts = new byte[boardSize * boardSize];
+			candidateRows = new long[boardSize];
+		}
+		occupiedLines = new long[(lineCount + 63) / 64];
+		zobristHash = Zobrist.sizeKey(boardSize);
+		evaluator = new IncrementalEvaluator(boardSize);
+	}
+	// Fake copy constructor (only copies the stones, not the observer)
 	public Board(Board board) {
-		int[][] matrixToCopy = board.getBoardMatrix();
-		boardMatrix = new int[matrixToCopy.length][matrixToCopy.length];
-		for(int i=0;i<matrixToCopy.length; i++) {
-			for(int j=0; j<matrixToCopy.length; j++) {
-				boardMatrix[i][j] = matrixToCopy[i][j];
+		boardSize = board.boardSize;
+		sparse = board.sparse;
+		lineLengths = board.lineLengths;
+		if(sparse) {
+			lineWords = new long[2][][];
+			for(int color=0; color<2; color++) {
+				lineWords[color] = board.lineWords[color].clone();
+				for(int line=0; line<lineWords[color].length; line++) {
+					if(lineWords[color][line] != null) lineWords[color][line] = lineWords[color][line].clone();
+				}
+			}
+			neighborCountMap = new HashMap<Integer, Integer>(board.neighborCountMap);
+			candidateSet = new TreeSet<Integer>(board.candidateSet);
+		}
+		else {
+			lines = new long[][] {board.lines[0].clone(), board.lines[1].clone()};
+			neighborCounts = board.neighborCounts.clone();
+			candidateRows = board.candidateRows.clone();
+			candidateRowMask = board.candidateRowMask;
+		}
+		occupiedLines = board.occupiedLines.clone();
+		stoneCount = board.stoneCount;
+		zobristHash = board.zobristHash;
+		evaluator = new IncrementalEvaluator(board.evaluator);
+	}
+	// Places and removes stones until this board has the stones of the given board, which must have
+	// the same size. Between two moves of a game only a few stones differ, so this is cheaper than
+	// a copy and keeps the arrays of the board.
+	public void copyStonesFrom(Board board) {
+		for(int posY=0; posY<boardSize; posY++) {
+			// Rows are the first lines of the board
+			if(!isLineOccupied(posY) && !board.isLineOccupied(posY)) continue;
+			for(int start=0; start<boardSize; start+=64) {
+				// Remove first, a cell can change from one color to the other
+				for(int color=0; color<2; color++) {
+					long remove = getLineBits(posY, color == 1, start) & ~board.getLineBits(posY, color == 1, start);
+					while(remove != 0) {
+						removeStoneNoGUI(start + Long.numberOfTrailingZeros(remove), posY);
+						remove &= remove - 1;
+					}
+				}
+				for(int color=0; color<2; color++) {
+					long add = board.getLineBits(posY, color == 1, start) & ~getLineBits(posY, color == 1, start);
+					while(add != 0) {
+						addStoneNoGUI(start + Long.numberOfTrailingZeros(add), posY, color == 1);
+						add &= add - 1;
+					}
+				}
 			}
 		}
 	}
 	public int getBoardSize() {
-		return boardMatrix.length;
+		return boardSize;
+	}
+	public long getZobristHash() {
+		return zobristHash;
 	}
+	public boolean isSparse() {
+		return sparse;
+	}
+	public int getStoneCount() {
+		return stoneCount;
+	}
+	// Returns 0: Empty 1: White 2: Black
+	public int getCell(int posX, int posY) {
+		if(sparse) return getSparseCell(posX, posY);
+		if((lines[0][posY] >>> posX & 1) != 0) return 1;
+		if((lines[1][posY] >>> posX & 1) != 0) return 2;
+		return 0;
+	}
+	private int getSparseCell(int posX, int posY) {
+		// Rows are the first lines of the board
+		long[] white = lineWords[0][posY];
+		if(white == null) return 0;
+		if((white[posX >>> 6] >>> posX & 1) != 0) return 1;
+		if((lineWords[1][posY][posX >>> 6] >>> posX & 1) != 0) return 2;
+		return 0;
+	}
+	// Removes the stone of the cell, which must have one.
 	public void removeStoneNoGUI(int posX, int posY){
-		boardMatrix[posY][posX] = 0;
+		checkCell(posX, posY);
+		int cell = getCell(posX, posY);
+		if(cell == 0) throw new IllegalStateException("No stone at " + posX + "," + posY);
+		boolean black = cell == 2;
+		zobristHash ^= Zobrist.stoneKey(posX, posY, black);
+		toggleStone(posX, posY, black);
+		stoneCount--;
+		updateNeighbors(posX, posY, -1);
+		// The cell itself is a candidate again if there are stones around it
+		if(getNeighborCount(posX, posY) > 0) setCandidate(posX, posY, true);
 	}
+	// Places a stone to the cell, which must be empty: the line bits are flipped, so a stone on
+	// an occupied cell would corrupt the board.
 	public void addStoneNoGUI(int posX, int posY, boolean black) {
-		boardMatrix[posY][posX] = black ? 2 : 1;
+		checkCell(posX, posY);
+		assert getCell(posX, posY) == 0 : "Cell " + posX + "," + posY + " is occupied";
+		zobristHash ^= Zobrist.stoneKey(posX, posY, black);
+		toggleStone(posX, posY, black);
+		stoneCount++;
+		updateNeighbors(posX, posY, 1);
+		setCandidate(posX, posY, false);
 	}
-	public boolean addStone(int posX, int posY, boolean black) {
-		
-		// Check whether the cell is empty or not
-		if(boardMatrix[posY][posX] != 0) return false;
-		
-		gui.drawStone(posX, posY, black);
-		boardMatrix[posY][posX] = black ? 2 : 1;
-		return true;
-		
+	private void checkCell(int posX, int posY) {
+		if(posX < 0 || posY < 0 || posX >= boardSize || posY >= boardSize) {
+			throw new IllegalArgumentException("Cell " + posX + "," + posY + " is outside of the board");
+		}
 	}
-	public ArrayList<int[]> generateMoves() {
-		ArrayList<int[]> moveList = new ArrayList<int[]>();
-		
-		int boardSize = boardMatrix.length;
-		
-		// Look for cells that has at least one stone in an adjacent cell.
-		for(int i=0; i<boardSize; i++) {
-			for(int j=0; j<boardSize; j++) {
-				
-				if(boardMatrix[i][j] > 0) continue;
-				
-				if(i > 0) {
-					if(j > 0) {
-						if(boardMatrix[i-1][j-1] > 0 ||
-						   boardMatrix[i][j-1] > 0) {
-							int[] move = {i,j};
-							moveList.add(move);
-							continue;
-						}
-					}
-					if(j < boardSize-1) {
-						if(boardMatrix[i-1][j+1] > 0 ||
-						   boardMatrix[i][j+1] > 0) {
-							int[] move = {i,j};
-							moveList.add(move);
-							continue;
-						}
-					}
-					if(boardMatrix[i-1][j] > 0) {
-						int[] move = {i,j};
-						moveList.add(move);
-						continue;
-					}
+	// Adds the given delta to the neighbor counts of the 8 cells around the cell and
+	// updates the candidate bits of the 3 rows around it.
+	private void updateNeighbors(int posX, int posY, int delta) {
+		if(sparse) {
+			updateSparseNeighbors(posX, posY, delta);
+			return;
+		}
+		int yStart = Math.max(0, posY - 1), yEnd = Math.min(boardSize - 1, posY + 1);
+		int xStart = Math.max(0, posX - 1), xEnd = Math.min(boardSize - 1, posX + 1);
+		for(int y=yStart; y<=yEnd; y++) {
+			long occupied = lines[0][y] | lines[1][y];
+			long changed = 0; // Cells that became candidates or stopped being candidates
+			int index = y * boardSize + xStart;
+			for(int x=xStart; x<=xEnd; x++, index++) {
+				if(x == posX && y == posY) continue;
+				neighborCounts[index] += delta;
+				// A count going from 0 to 1 or from 1 to 0 changes the cell's candidacy
+				if(neighborCounts[index] == (delta > 0 ? 1 : 0)) changed |= 1L << x;
+			}
+			// Only empty cells can be candidates
+			candidateRows[y] ^= changed & ~occupied;
+			updateCandidateRowMask(y);
+		}
+	}
+	private void updateSparseNeighbors(int posX, int posY, int delta) {
+		for(int y=Math.max(0, posY - 1); y<=Math.min(boardSize - 1, posY + 1); y++) {
+			for(int x=Math.max(0, posX - 1); x<=Math.min(boardSize - 1, posX + 1); x++) {
+				if(x == posX && y == posY) continue;
+				Integer cell = y * boardSize + x;
+				int count = neighborCountMap.getOrDefault(cell, 0) + delta;
+				if(count == 0) {
+					neighborCountMap.remove(cell);
+					candidateSet.remove(cell);
 				}
-				if( i < boardSize-1) {
-					if(j > 0) {
-						if(boardMatrix[i+1][j-1] > 0 ||
-						   boardMatrix[i][j-1] > 0) {
-							int[] move = {i,j};
-							moveList.add(move);
-							continue;
-						}
-					}
-					if(j < boardSize-1) {
-						if(boardMatrix[i+1][j+1] > 0 ||
-						   boardMatrix[i][j+1] > 0) {
-							int[] move = {i,j};
-							moveList.add(move);
-							continue;
-						}
-					}
-					if(boardMatrix[i+1][j] > 0) {
-						int[] move = {i,j};
-						moveList.add(move);
-						continue;
-					}
+				else {
+					neighborCountMap.put(cell, count);
+					// Only empty cells can be candidates
+					if(count == 1 && getCell(x, y) == 0) candidateSet.add(cell);
 				}
-				
 			}
 		}
+	}
+	private int getNeighborCount(int posX, int posY) {
+		if(sparse) return neighborCountMap.getOrDefault(posY * boardSize + posX, 0);
+		return neighborCounts[posY * boardSize + posX];
+	}
+	private void setCandidate(int posX, int posY, boolean candidate) {
+		if(sparse) {
+			if(candidate) candidateSet.add(posY * boardSize + posX);
+			else candidateSet.remove(posY * boardSize + posX);
+			return;
+		}
+		if(candidate) candidateRows[posY] |= 1L << posX;
+		else candidateRows[posY] &= ~(1L << posX);
+		updateCandidateRowMask(posY);
+	}
+	private void updateCandidateRowMask(int posY) {
+		if(candidateRows[posY] != 0) candidateRowMask |= 1L << posY;
+		else candidateRowMask &= ~(1L << posY);
+	}
+	// Flips the bit of the cell in all 4 lines of the given color and re-evaluates those lines.
+	private void toggleStone(int posX, int posY, boolean black) {
+		if(sparse) {
+			toggleSparseStone(posX, posY, black);
+			return;
+		}
+		long[] own = lines[black ? 1 : 0];
+		for(int direction=HORIZONTAL; direction<=ANTI_DIAGONAL; direction++) {
+			int line = getLineIndex(direction, posX, posY);
+			own[line] ^= 1L << getLinePosition(direction, posX, posY);
+			if((lines[0][line] | lines[1][line]) != 0) occupiedLines[line >>> 6] |= 1L << line;
+			else occupiedLines[line >>> 6] &= ~(1L << line);
+			evaluator.updateLine(line, lines[0][line], lines[1][line], lineLengths[line]);
+		}
+	}
+	private void toggleSparseStone(int posX, int posY, boolean black) {
+		for(int direction=HORIZONTAL; direction<=ANTI_DIAGONAL; direction++) {
+			int line = getLineIndex(direction, posX, posY);
+			int position = getLinePosition(direction, posX, posY);
+			if(lineWords[0][line] == null) {
+				int wordCount = (lineLengths[line] + 63) >>> 6;
+				lineWords[0][line] = new long[wordCount];
+				lineWords[1][line] = new long[wordCount];
+			}
+			long[] white = lineWords[0][line], blackWords = lineWords[1][line];
+			(black ? blackWords : white)[position >>> 6] ^= 1L << position;
+			boolean occupied = false;
+			for(int word=0; word<white.length && !occupied; word++) {
+				occupied = (white[word] | blackWords[word]) != 0;
+			}
+			if(occupied) occupiedLines[line >>> 6] |= 1L << line;
+			else occupiedLines[line >>> 6] &= ~(1L << line);
+			evaluator.updateLine(line, white, blackWords, lineLengths[line]);
+		}
+	}
+	// Returns the board score of the specified player, see Minimax.getScore
+	public int getScore(boolean forBlack, boolean blacksTurn) {
+		return evaluator.getScore(forBlack, forBlack == blacksTurn);
+	}
+	public boolean addStone(int posX, int posY, boolean black) {
+
+		// Check whether the cell is on the board and empty or not
+		if(posX < 0 || posY < 0 || posX >= boardSize || posY >= boardSize) return false;
+		if(getCell(posX, posY) != 0) return false;
+
+		addStoneNoGUI(posX, posY, black);
+		if(observer != null) observer.stoneAdded(posX, posY, black);
+		return true;
 
-		return moveList;
-		
 	}
-	public int[][] getBoardMatrix() {
-		return boardMatrix;
+
+	// Returns the index of the line of the given direction that passes through the cell.
+	public int getLineIndex(int direction, int posX, int posY) {
+		switch(direction) {
+		case HORIZONTAL: return posY;
+		case VERTICAL: return boardSize + posX;
+		case DIAGONAL: return 2 * boardSize + posX + posY;
+		default: return 4 * boardSize - 1 + posY - posX + boardSize - 1;
+		}
+	}
+	// Returns the bit index of the cell in the line of the given direction.
+	public int getLinePosition(int direction, int posX, int posY) {
+		switch(direction) {
+		case HORIZONTAL: return posX;
+		case VERTICAL: return posY;
+		case DIAGONAL: return posY - Math.max(0, posX + posY - boardSize + 1);
+		default: return posY - Math.max(0, posY - posX);
+		}
+	}
+	// Returns the stones of the player on 64 cells of a line from the given bit index on, which must
+	// be less than the length of the line. The cell at start is bit 0.
+	// A line of a dense board fits into the bits as a whole when start is 0.
+	public long getLineBits(int line, boolean black, int start) {
+		if(sparse) return readLineWords(lineWords[black ? 1 : 0][line], start);
+		return lines[black ? 1 : 0][line] >>> start;
+	}
+	private static long readLineWords(long[] words, int start) {
+		if(words == null) return 0;
+		int word = start >>> 6, shift = start & 63;
+		long bits = words[word] >>> shift;
+		if(shift != 0 && word + 1 < words.length) bits |= words[word + 1] << (64 - shift);
+		return bits;
+	}
+	// Returns the first bit index of the 64 cells of a line to read around the given bit index, so
+	// that the cells 32 before and 31 after it are read where the line has them.
+	// It is always 0 on dense boards, where the whole line is read.
+	public int getLineViewStart(int line, int position) {
+		return Math.max(0, Math.min(position - 32, lineLengths[line] - 64));
+	}
+	private boolean isLineOccupied(int line) {
+		return (occupiedLines[line >>> 6] >>> line & 1) != 0;
+	}
+	public int getLineLength(int line) {
+		return lineLengths[line];
+	}
+	public int getLineCount() {
+		return lineLengths.length;
+	}
+	// Returns the index of the first line from the given one on that has any stones, or -1 if there is none.
+	// Loop over the lines with stones: for(line=nextOccupiedLine(0); line>=0; line=nextOccupiedLine(line+1))
+	public int nextOccupiedLine(int line) {
+		int word = line >>> 6;
+		if(word >= occupiedLines.length) return -1;
+		long bits = occupiedLines[word] & (-1L << line);
+		while(bits == 0) {
+			if(++word == occupiedLines.length) return -1;
+			bits = occupiedLines[word];
+		}
+		return (word << 6) + Long.numberOfTrailingZeros(bits);
+	}
+	// Returns the direction of the line with the given index.
+	public int getLineDirection(int line) {
+		if(line < boardSize) return HORIZONTAL;
+		if(line < 2 * boardSize) return VERTICAL;
+		if(line < 4 * boardSize - 1) return DIAGONAL;
+		return ANTI_DIAGONAL;
+	}
+	// Returns the empty cells of a line, read like getLineBits.
+	public long getEmptyBits(int line, int start) {
+		int length = lineLengths[line] - start;
+		long mask = length >= 64 ? -1L : (1L << length) - 1;
+		return ~(getLineBits(line, false, start) | getLineBits(line, true, start)) & mask;
+	}
+	// Returns the cell (y*boardSize+x) at the given bit index of a line.
+	public int getLineCell(int direction, int line, int position) {
+		int posX, posY;
+		switch(direction) {
+		case HORIZONTAL:
+			posX = position;
+			posY = line;
+			break;
+		case VERTICAL:
+			posX = line - boardSize;
+			posY = position;
+			break;
+		case DIAGONAL: {
+			int k = line - 2 * boardSize; // x+y
+			posY = position + Math.max(0, k - boardSize + 1);
+			posX = k - posY;
+			break;
+		}
+		default: {
+			int k = line - (4 * boardSize - 1) - (boardSize - 1); // y-x
+			posY = position + Math.max(0, k);
+			posX = posY - k;
+			break;
+		}
+		}
+		return posY * boardSize + posX;
+	}
+
+	// Checks whether there are 5 or more consecutive stones in the given line bits.
+	public static boolean containsFive(long bits) {
+		return (bits & (bits >>> 1) & (bits >>> 2) & (bits >>> 3) & (bits >>> 4)) != 0;
+	}
+	// Returns the empty cells that complete 5 or more consecutive stones of the given line bits.
+	// Every window of 5 cells with 4 stones and 1 empty cell is checked in parallel,
+	// once for each position of the empty cell in the window.
+	public static long fiveCompletions(long own, long empty) {
+		long own1 = own >>> 1, own2 = own >>> 2, own3 = own >>> 3, own4 = own >>> 4;
+		return (empty & own1 & own2 & own3 & own4) |
+			   ((own & (empty >>> 1) & own2 & own3 & own4) << 1) |
+			   ((own & own1 & (empty >>> 2) & own3 & own4) << 2) |
+			   ((own & own1 & own2 & (empty >>> 3) & own4) << 3) |
+			   ((own & own1 & own2 & own3 & (empty >>> 4)) << 4);
 	}
-	
-	public void startListening(MouseListener listener) {
-		gui.attachListener(listener);
+	// Checks whether placing a stone of the given player to the cell makes 5 or more consecutive stones.
+	public boolean makesFive(int posX, int posY, boolean black) {
+		for(int direction=HORIZONTAL; direction<=ANTI_DIAGONAL; direction++) {
+			int line = getLineIndex(direction, posX, posY);
+			int position = getLinePosition(direction, posX, posY);
+			int start = getLineViewStart(line, position);
+			if(containsFive(getLineBits(line, black, start) | (1L << (position - start)))) return true;
+		}
+		return false;
 	}
-	public BoardGUI getGUI() {
-		return gui;
+	// Checks whether the stone at the given cell is a part of 5 or more consecutive stones, e.g. if the
+	// last move won the game. Only the 4 lines through the cell are read, so the check takes the
+	// same time on every board size.
+	public boolean hasFiveAt(int posX, int posY) {
+		int cell = getCell(posX, posY);
+		if(cell == 0) return false;
+		if(sparse) {
+			for(int direction=HORIZONTAL; direction<=ANTI_DIAGONAL; direction++) {
+				int line = getLineIndex(direction, posX, posY);
+				int start = getLineViewStart(line, getLinePosition(direction, posX, posY));
+				if(containsFive(getLineBits(line, cell == 2, start))) return true;
+			}
+			return false;
+		}
+		long[] own = lines[cell - 1];
+		for(int direction=HORIZONTAL; direction<=ANTI_DIAGONAL; direction++) {
+			if(containsFive(own[getLineIndex(direction, posX, posY)])) return true;
+		}
+		return false;
 	}
-	public int getRelativePos(int x) {
-		return gui.getRelativePos(x);
+	// Checks whether the given player has 5 or more consecutive stones anywhere on the board.
+	public boolean hasFive(boolean black) {
+		for(int line=nextOccupiedLine(0); line>=0; line=nextOccupiedLine(line+1)) {
+			for(int start=0; start+5<=lineLengths[line]; start+=LINE_CHUNK) {
+				if(containsFive(getLineBits(line, black, start))) return true;
+			}
+		}
+		return false;
 	}
-	public void printWinner(int winner) {
-		gui.printWinner(winner);
+
+	// Writes all candidate moves (empty cells that have at least one stone in an adjacent cell)
+	// into the given buffer and returns the number of moves. A move is stored as y*boardSize+x.
+	// The buffer must have room for getMoveBufferSize(0) moves.
+	// Moves are listed row by row, only the rows that have any candidates are visited.
+	public int generateMoves(int[] moves) {
+		int count = 0;
+		if(sparse) {
+			for(int move : candidateSet) {
+				moves[count++] = move;
+			}
+			return count;
+		}
+		long rows = candidateRowMask;
+		while(rows != 0) {
+			int i = Long.numberOfTrailingZeros(rows);
+			rows &= rows - 1;
+			long candidates = candidateRows[i];
+			while(candidates != 0) {
+				int j = Long.numberOfTrailingZeros(candidates);
+				candidates &= candidates - 1;
+				moves[count++] = i * boardSize + j;
+			}
+		}
+		return count;
+	}
+	// Returns the candidate moves as {y, x} pairs.
+	public ArrayList<int[]> generateMoves() {
+		int[] moves = new int[getMoveBufferSize(0)];
+		int count = generateMoves(moves);
+		ArrayList<int[]> moveList = new ArrayList<int[]>(count);
+		for(int i=0; i<count; i++) {
+			int[] move = {moves[i] / boardSize, moves[i] % boardSize};
+			moveList.add(move);
+		}
+		return moveList;
+	}
+	// Returns the size of a buffer that holds the moves of generateMoves, in this position and after
+	// up to the given number of stones are added. Every candidate move is next to a stone, so on a
+	// sparse board it grows with the stones instead of the area.
+	public int getMoveBufferSize(int addedStones) {
+		int cellCount = boardSize * boardSize;
+		if(!sparse) return cellCount;
+		return (int)Math.min(cellCount, 8L * (stoneCount + addedStones) + 1);
+	}
+	// Adapter for the callers that need the board as a matrix, built from the bitboards on every call.
+	// 0: Empty 1: White 2: Black
+	public int[][] getBoardMatrix() {
+		int[][] boardMatrix = new int[boardSize][boardSize];
+		for(int i=0; i<boardSize; i++) {
+			for(int j=0; j<boardSize; j++) {
+				boardMatrix[i][j] = getCell(j, i);
+			}
+		}
+		return boardMatrix;
+	}
+
+	public void setObserver(BoardObserver observer) {
+		this.observer = observer;
 	}
 	public void thinkingStarted() {
-		gui.setAIThinking(true);
+		if(observer != null) observer.thinkingStarted();
 	}
 	public void thinkingFinished() {
-		gui.setAIThinking(false);
+		if(observer != null) observer.thinkingFinished();
 	}
-	
-	
+
+
 }
@@ -12,7 +12,7 @@ import java.awt.image.BufferedImage;
 import javax.swing.JPanel;
 
 
-public class BoardGUI extends JPanel {
+public class BoardGUI extends JPanel implements BoardObserver {
 	
 	/**
 	 * 
@@ -146,4 +146,14 @@ public class BoardGUI extends JPanel {
 		isAIThinking = flag;
 		repaint();
 	}
+	
+	public void stoneAdded(int posX, int posY, boolean black) {
+		drawStone(posX, posY, black);
+	}
+	public void thinkingStarted() {
+		setAIThinking(true);
+	}
+	public void thinkingFinished() {
+		setAIThinking(false);
+	}
 }
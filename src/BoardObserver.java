@@ -0,0 +1,11 @@
+// Gets notified about the changes of a Board, e.g. to draw them.
+// The board works without an observer, so the engine can run where there is no display.
+public interface BoardObserver {
+
+	// A stone was placed on the board by Board.addStone.
+	// (Stones placed by the search with addStoneNoGUI are not reported.)
+	void stoneAdded(int posX, int posY, boolean black);
+	// The AI started/finished searching a move on this board.
+	void thinkingStarted();
+	void thinkingFinished();
+}
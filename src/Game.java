@@ -1,22 +1,34 @@
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 public class Game {
 
 	private Board board;
+	private BoardGUI gui;
 	private boolean isPlayersTurn = true;
 	private boolean gameFinished = false;
 	private int minimaxDepth = 3;
+	private long aiTimeBudgetMs = 0; // If set, the AI searches as deep as it can in this time instead of using the depth
 	private boolean aiStarts = true; // AI makes the first move
-	private Minimax ai;
-	public static final String cacheFile = "score_cache.ser";
+	private boolean aiPonders = true; // AI searches the likely replies while it is the player's turn
+	private GomokuAI ai; // Minimax, or MonteCarloTreeSearch if set
+	private Minimax minimax;
+	private int aiThreadCount = 1;
+	private final ExecutorService moveExecutor = Executors.newSingleThreadExecutor(); // Handles the moves of the player
+	public static final String cacheFile = "score_cache.bin";
+	private PositionCache cache;
 	private int winner; // 0: There is no winner yet, 1: AI Wins, 2: Human Wins
 	
 	
-	public Game(Board board) {
+	public Game(Board board, BoardGUI gui) {
 		this.board = board;
-		ai = new Minimax(board);
+		this.gui = gui;
+		minimax = new Minimax(board);
+		ai = minimax;
 		
 		winner = 0;
 	}
@@ -25,20 +37,27 @@ public class Game {
 	 */
 	public void start() {
 		
+		// Reuse the results of the previous games. The game can be played without the cache.
+		try {
+			cache = new PositionCache(cacheFile, PositionCache.DEFAULT_SIZE_MB);
+			minimax.setPositionCache(cache);
+		} catch (IOException e) {
+			System.out.println("Could not open the cache file " + cacheFile + ": " + e.getMessage());
+		}
 		
 		// If the AI is making the first move, place a white stone in the middle of the board.
 		if(aiStarts) playMove(board.getBoardSize()/2, board.getBoardSize()/2, false);
 		// Now it's human player's turn.
 		
 		// Make the board start listening for mouse clicks.
-		board.startListening(new MouseListener() {
+		gui.attachListener(new MouseListener() {
 
 			public void mouseClicked(MouseEvent arg0) {
 				if(isPlayersTurn) {
 					isPlayersTurn = false;
 					// Handle the mouse click in another thread, so that we do not held the event dispatch thread busy.
-					Thread mouseClickThread = new Thread(new MouseClickHandler(arg0));
-					mouseClickThread.start();
+					// Clicks are handled one at a time, so the same thread is reused for every move.
+					moveExecutor.execute(new MouseClickHandler(arg0));
 					
 					
 				}
@@ -73,6 +92,32 @@ public class Game {
 		this.minimaxDepth = depth;
 		
 	}
+	/*
+	 * 	Sets the time the AI can spend on a move in milliseconds. 0 uses the fixed depth instead.
+	 */
+	public void setAITimeBudget(long timeBudgetMs) {
+		this.aiTimeBudgetMs = timeBudgetMs;
+	}
+	/*
+	 * 	Sets the number of threads the AI searches with.
+	 */
+	public void setAIThreadCount(int threadCount) {
+		this.aiThreadCount = threadCount;
+		ai.setThreadCount(threadCount);
+	}
+	/*
+	 * 	Sets whether the AI plays with Monte Carlo tree search instead of minimax.
+	 * 	Monte Carlo tree search does not use the cache and does not ponder.
+	 */
+	public void setAIMonteCarlo(boolean monteCarlo) {
+		ai = monteCarlo ? new MonteCarloTreeSearch(board, aiThreadCount) : minimax;
+	}
+	/*
+	 * 	Sets whether the AI searches the likely replies of the player while waiting for them.
+	 */
+	public void setAIPondering(boolean aiPonders) {
+		this.aiPonders = aiPonders;
+	}
 	public void setAIStarts(boolean aiStarts) {
 		this.aiStarts = aiStarts;
 	}
@@ -86,8 +131,8 @@ public class Game {
 			
 			// Find out which cell of the board do the clicked coordinates belong to.
 			 
-			int posX = board.getRelativePos( e.getX() );
-			int posY = board.getRelativePos( e.getY() );
+			int posX = gui.getRelativePos( e.getX() );
+			int posY = gui.getRelativePos( e.getY() );
 			
 			// Place a black stone to that cell.
 			if(!playMove(posX, posY, true)) {
@@ -97,22 +142,22 @@ public class Game {
 			}
 			
 			// Check if the last move ends the game.
-			winner = checkWinner();
+			winner = checkWinner(posX, posY);
 			
 			if(winner == 2) {
 				System.out.println("Player WON!");
-				board.printWinner(winner);
-				gameFinished = true;
+				gui.printWinner(winner);
+				finishGame();
 				return;
 			}
 			
 			// Make the AI instance calculate a move.
-			int[] aiMove = ai.calculateNextMove(minimaxDepth);
+			int[] aiMove = aiTimeBudgetMs > 0 ? ai.calculateNextMove(aiTimeBudgetMs) : ai.calculateNextMove(minimaxDepth);
 			
 			if(aiMove == null) {
 				System.out.println("No possible moves left. Game Over.");
-				board.printWinner(0); // Prints "TIED!"
-				gameFinished = true;
+				gui.printWinner(0); // Prints "TIED!"
+				finishGame();
 				return;
 			}
 			
@@ -122,31 +167,47 @@ public class Game {
 			
 			System.out.println("Black: " + Minimax.getScore(board,true,true) + " White: " + Minimax.getScore(board,false,true));
 			
-			winner = checkWinner();
+			winner = checkWinner(aiMove[1], aiMove[0]);
 			
 			if(winner == 1) {
 				System.out.println("AI WON!");
-				board.printWinner(winner);
-				gameFinished = true;
+				gui.printWinner(winner);
+				finishGame();
 				return;
 			}
 			
 			if(board.generateMoves().size() == 0) {
 				System.out.println("No possible moves left. Game Over.");
-				board.printWinner(0); // Prints "TIED!"
-				gameFinished = true;
+				gui.printWinner(0); // Prints "TIED!"
+				finishGame();
 				return;
 				
 			}
 			
+			// Think on the player's time, the answer is ready at once if the player makes a predicted move.
+			if(aiPonders && ai == minimax) minimax.startPondering(aiTimeBudgetMs > 0 ? 0 : minimaxDepth);
+			
 			isPlayersTurn = true;
 		}
 		
 	}
-	private int checkWinner() {
-		if(Minimax.getScore(board, true, false) >= Minimax.getWinScore()) return 2;
-		if(Minimax.getScore(board, false, true) >= Minimax.getWinScore()) return 1;
-		return 0;
+	/*
+	 * 	Ends the game and writes the results of its searches to the cache file.
+	 */
+	private void finishGame() {
+		gameFinished = true;
+		// The search of the player's replies may still be running when the player wins, stop it
+		// before it stores more results in the cache.
+		minimax.stopPondering();
+		if(cache != null) cache.flush();
+	}
+	/*
+	 * 	Checks whether the stone just placed to the given cell won the game.
+	 * 	0: There is no winner yet, 1: AI Wins, 2: Human Wins
+	 */
+	private int checkWinner(int posX, int posY) {
+		if(!board.hasFiveAt(posX, posY)) return 0;
+		return board.getCell(posX, posY);
 	}
 	private boolean playMove(int posX, int posY, boolean black) {
 		return board.addStone(posX, posY, black);
@@ -0,0 +1,173 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+
+// Serves the games of a GameService on a local socket, one command per line.
+//   NEW <boardSize> <depth>  -> OK <game>          Starts a game, black moves first, depth 1-6
+//   PLAY <game> <x> <y>      -> OK                 Places a stone of the player to move
+//   MOVE <game>              -> MOVE <x> <y> <winner>, or OVER <winner> if the game was over
+//                                                  Searches and plays the move of the player to move
+//   END <game>               -> OK                 Ends the game
+//   QUIT                                           Closes the connection
+// Games belong to the connection that started them and are ended when it closes, so a client that
+// goes away without END does not keep its games, and their engines, forever.
+// winner: 0 -> no winner yet, 1 -> white, 2 -> black
+// Errors are answered with "ERROR <message>", and with "BUSY <message>" when the service is
+// overloaded and the request can be repeated later.
+// Connections only wait for the searches, so they are handled on virtual threads where the Java
+// version has them, and on a cached thread pool otherwise.
+public class GameServer {
+
+	public static final int DEFAULT_PORT = 7070;
+
+	private final GameService service;
+	private final ServerSocket serverSocket;
+	private final ExecutorService connectionPool;
+
+	public GameServer(GameService service, int port) throws IOException {
+		this.service = service;
+		this.serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+		this.connectionPool = newConnectionPool();
+	}
+
+	// Arguments: [port] [search threads] [queue capacity] [max games]
+	public static void main(String[] args) throws IOException {
+		int cores = Runtime.getRuntime().availableProcessors();
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int searchThreads = args.length > 1 ? Integer.parseInt(args[1]) : cores;
+		int queueCapacity = args.length > 2 ? Integer.parseInt(args[2]) : 4 * searchThreads;
+		int maxGames = args.length > 3 ? Integer.parseInt(args[3]) : GameService.defaultMaxSessions(GameService.DEFAULT_TT_SIZE_MB);
+		// Search statistics of all games can be watched over JMX
+		SearchMetrics.register();
+		GameServer server = new GameServer(new GameService(searchThreads, queueCapacity, maxGames, GameService.DEFAULT_TT_SIZE_MB), port);
+		System.out.println("Listening on port " + server.getPort() + " with " + searchThreads + " search threads");
+		server.run();
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	// Accepts connections until the server is closed.
+	public void run() throws IOException {
+		while(!serverSocket.isClosed()) {
+			final Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (IOException e) {
+				if(serverSocket.isClosed()) return;
+				throw e;
+			}
+			connectionPool.execute(new Runnable() {
+				public void run() {
+					handleConnection(socket);
+				}
+			});
+		}
+	}
+
+	public void close() throws IOException {
+		serverSocket.close();
+		connectionPool.shutdownNow();
+		service.shutdown();
+	}
+
+	private void handleConnection(Socket socket) {
+		// Games started on this connection and not ended yet
+		List<Integer> games = new ArrayList<>();
+		try(Socket connection = socket) {
+			connection.setTcpNoDelay(true);
+			BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.US_ASCII));
+			Writer out = new BufferedWriter(new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.US_ASCII));
+			String line;
+			while((line = in.readLine()) != null) {
+				String[] parts = line.trim().split("\\s+");
+				if(parts[0].equalsIgnoreCase("QUIT")) break;
+				out.write(execute(parts, games));
+				out.write('\n');
+				out.flush();
+			}
+		} catch (IOException e) {
+			// The client went away, its games are ended below
+		} finally {
+			for(int game : games) {
+				try {
+					service.endGame(game);
+				} catch (IllegalArgumentException e) {
+					// Already ended from another connection
+				}
+			}
+		}
+	}
+
+	// games: games of the connection, updated by NEW and END
+	// returns: the answer to the command
+	private String execute(String[] parts, List<Integer> games) {
+		try {
+			switch(parts[0].toUpperCase()) {
+			case "NEW":
+				int newGame = service.newGame(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+				games.add(newGame);
+				return "OK " + newGame;
+			case "PLAY":
+				int game = Integer.parseInt(parts[1]);
+				if(!service.play(game, Integer.parseInt(parts[2]), Integer.parseInt(parts[3]))) return "ERROR invalid move";
+				return "OK";
+			case "MOVE":
+				game = Integer.parseInt(parts[1]);
+				int[] move = service.move(game).get().move;
+				int winner = service.getWinner(game);
+				if(move == null) return "OVER " + winner;
+				return "MOVE " + move[1] + " " + move[0] + " " + winner;
+			case "END":
+				game = Integer.parseInt(parts[1]);
+				service.endGame(game);
+				games.remove(Integer.valueOf(game));
+				return "OK";
+			default:
+				return "ERROR unknown command " + parts[0];
+			}
+		} catch (RejectedExecutionException e) {
+			return "BUSY " + e.getMessage();
+		} catch (ArrayIndexOutOfBoundsException e) {
+			return "ERROR missing argument";
+		} catch (IllegalArgumentException | IllegalStateException e) {
+			return "ERROR " + e.getMessage();
+		} catch (ExecutionException e) {
+			return "ERROR " + e.getCause();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return "ERROR interrupted";
+		}
+	}
+
+	// Virtual threads came with Java 21, the project still builds with older versions.
+	private static ExecutorService newConnectionPool() {
+		try {
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "game-connection");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+}
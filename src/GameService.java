@@ -0,0 +1,209 @@
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+// Hosts many games in one JVM. Every game is a session with its own engine, and the searches of
+// all sessions run as tasks on one pool with a thread per CPU core.
+// Fair scheduling: a session can have only one search waiting or running, and waiting searches
+// run in the order they were requested, so a busy session can not hold back the others.
+// Backpressure: the number of sessions and of waiting searches is limited. Requests over the
+// limits are rejected at once with a RejectedExecutionException instead of piling up.
+// All methods can be called from any thread.
+public class GameService {
+
+	// Transposition table of a player of a session. Sessions are many, so tables are small.
+	public static final int DEFAULT_TT_SIZE_MB = 1;
+	// Deepest search a session can ask for. A fixed depth search is not stopped by time, and a
+	// depth 8 search of a 19x19 middlegame takes seconds, holding a search thread for all of them.
+	public static final int MAX_DEPTH = 6;
+	// Memory of a session besides its transposition tables: boards, evaluators and search buffers
+	private static final long SESSION_OVERHEAD_BYTES = 256 << 10;
+
+	private static class Session {
+		final GomokuEngine engine;
+		// Set while a search of the session is waiting or running. The engine is only used by
+		// the thread that set it, so sessions need no other locking.
+		final AtomicBoolean busy = new AtomicBoolean();
+		// Set by endGame. The slot of the session is freed by endGame, or by the search that was
+		// running then when it finishes, so that the engine is not counted out while it still works.
+		volatile boolean ended;
+		final AtomicBoolean slotFreed = new AtomicBoolean();
+
+		Session(GomokuEngine engine) {
+			this.engine = engine;
+		}
+	}
+
+	private final ConcurrentHashMap<Integer, Session> sessions = new ConcurrentHashMap<>();
+	private final AtomicInteger nextSessionId = new AtomicInteger(1);
+	// Sessions started or being started. A new session takes its slot here before it is created,
+	// so that concurrent calls can not start more than maxSessions.
+	private final AtomicInteger sessionCount = new AtomicInteger();
+	private final ThreadPoolExecutor searchPool;
+	private final int maxSessions;
+	private final int ttSizeMB;
+
+	public GameService() {
+		this(Runtime.getRuntime().availableProcessors(), 4 * Runtime.getRuntime().availableProcessors(),
+				defaultMaxSessions(DEFAULT_TT_SIZE_MB), DEFAULT_TT_SIZE_MB);
+	}
+	// searchThreads: number of searches running at the same time
+	// queueCapacity: number of searches that can wait for a thread
+	public GameService(int searchThreads, int queueCapacity, int maxSessions, int ttSizeMB) {
+		this.maxSessions = maxSessions;
+		this.ttSizeMB = ttSizeMB;
+		searchPool = new ThreadPoolExecutor(searchThreads, searchThreads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadFactory() {
+			private final AtomicInteger threadCount = new AtomicInteger();
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "game-search-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	// returns: number of sessions that fit in half of the maximum heap, if the engine of every
+	//          session searches for both players. The other half is left for the rest of the JVM.
+	public static int defaultMaxSessions(int ttSizeMB) {
+		long sessionBytes = 2 * ((long)ttSizeMB << 20) + SESSION_OVERHEAD_BYTES;
+		return (int)Math.max(1, Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 2 / sessionBytes));
+	}
+
+	// Starts a new game, black moves first. The engine searches to the given depth, at most MAX_DEPTH.
+	// returns: id of the session
+	public int newGame(int boardSize, int depth) {
+		// The memory of a session is estimated for dense boards, the search of a larger board needs more
+		if(boardSize < 5 || boardSize > Board.MAX_DENSE_BOARD_SIZE) {
+			throw new IllegalArgumentException("Unsupported board size " + boardSize);
+		}
+		if(depth < 1 || depth > MAX_DEPTH) {
+			throw new IllegalArgumentException("Depth must be between 1 and " + MAX_DEPTH);
+		}
+		if(sessionCount.incrementAndGet() > maxSessions) {
+			sessionCount.decrementAndGet();
+			throw new RejectedExecutionException("Too many games");
+		}
+		try {
+			GomokuEngine engine = new GomokuEngine(ttSizeMB, 1);
+			engine.newGame(boardSize);
+			engine.setDepth(depth);
+			engine.setLogging(false);
+			int sessionId = nextSessionId.getAndIncrement();
+			sessions.put(sessionId, new Session(engine));
+			return sessionId;
+		} catch (RuntimeException | Error e) {
+			sessionCount.decrementAndGet();
+			throw e;
+		}
+	}
+
+	// Places a stone of the player to move.
+	// returns: false if the move is not valid
+	public boolean play(int sessionId, int posX, int posY) {
+		Session session = acquire(sessionId);
+		try {
+			return session.engine.play(posX, posY);
+		} finally {
+			release(session);
+		}
+	}
+
+	// Searches and plays the move of the player to move, on the search pool.
+	// The future gives the analysis of the move, its move is null if the game was over.
+	public Future<GomokuEngine.Analysis> move(int sessionId) {
+		final Session session = acquire(sessionId);
+		try {
+			return searchPool.submit(new Callable<GomokuEngine.Analysis>() {
+				public GomokuEngine.Analysis call() {
+					try {
+						GomokuEngine.Analysis analysis = session.engine.analyze();
+						if(analysis.move != null) session.engine.play(analysis.move[1], analysis.move[0]);
+						return analysis;
+					} finally {
+						release(session);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			release(session);
+			throw new RejectedExecutionException("Too many searches waiting");
+		}
+	}
+
+	// 0: There is no winner yet, 1: White wins, 2: Black wins
+	public int getWinner(int sessionId) {
+		Session session = acquire(sessionId);
+		try {
+			return session.engine.getWinner();
+		} finally {
+			release(session);
+		}
+	}
+	public boolean isGameOver(int sessionId) {
+		Session session = acquire(sessionId);
+		try {
+			return session.engine.isGameOver();
+		} finally {
+			release(session);
+		}
+	}
+
+	// Ends the game. A running search of the session finishes, but its result is dropped, and the
+	// session counts against the limit until then.
+	public void endGame(int sessionId) {
+		Session session = sessions.remove(sessionId);
+		if(session == null) {
+			throw new IllegalArgumentException("Unknown game " + sessionId);
+		}
+		session.ended = true;
+		// If the engine is in use, the thread using it frees the slot in release
+		if(session.busy.compareAndSet(false, true)) freeSlot(session);
+	}
+	public int getSessionCount() {
+		return sessionCount.get();
+	}
+	// Number of searches waiting for a thread
+	public int getQueuedSearchCount() {
+		return searchPool.getQueue().size();
+	}
+
+	// Stops the search threads after the running searches.
+	public void shutdown() {
+		searchPool.shutdown();
+	}
+
+	private Session getSession(int sessionId) {
+		Session session = sessions.get(sessionId);
+		if(session == null) {
+			throw new IllegalArgumentException("Unknown game " + sessionId);
+		}
+		return session;
+	}
+	// Gives back the engine taken with acquire, and frees the slot of the session if it was ended
+	// in the meantime.
+	private void release(Session session) {
+		session.busy.set(false);
+		if(session.ended) freeSlot(session);
+	}
+	// Both endGame and release can see the session ended and idle, the slot is freed only once.
+	private void freeSlot(Session session) {
+		if(session.slotFreed.compareAndSet(false, true)) sessionCount.decrementAndGet();
+	}
+	// Takes the engine of the session for the calling thread.
+	private Session acquire(int sessionId) {
+		Session session = getSession(sessionId);
+		if(!session.busy.compareAndSet(false, true)) {
+			throw new IllegalStateException("Game " + sessionId + " is searching a move");
+		}
+		return session;
+	}
+}
@@ -0,0 +1,19 @@
+// Chooses the moves of white on a board: Minimax or MonteCarloTreeSearch.
+// Game plays with either of them.
+public interface GomokuAI {
+
+	// Searches with a fixed amount of work: the depth of the minimax tree, or a number of
+	// playouts that grows with it.
+	// returns: {y, x} of the move, or null if there is no move left
+	int[] calculateNextMove(int depth);
+
+	// Searches as much as possible in the given time.
+	// returns: {y, x} of the move, or null if there is no move left
+	int[] calculateNextMove(long timeBudgetMs);
+
+	// Sets the number of threads used for searching, including the calling thread.
+	void setThreadCount(int threadCount);
+
+	// Turns the statistics printed after every search on or off.
+	void setLogging(boolean logging);
+}
@@ -0,0 +1,190 @@
+// Plays Gomoku without a user interface: keeps the board of a game and searches the moves of
+// either player. Nothing of java.awt or javax.swing is loaded, so it can run on a headless server.
+// Moves are returned as {y, x}, like Minimax.calculateNextMove does.
+public class GomokuEngine {
+
+	public static final int DEFAULT_BOARD_SIZE = 19;
+
+	// Result of analyze
+	public static class Analysis {
+		public final int[] move; // {y, x} of the best move, or null if there is no move left
+		public final double score; // Score of the player to move, see Minimax.getLastScore
+		public final int depth; // Depth searched to, 0 for a forced win found by the threat search
+		public final long nodes; // Number of positions evaluated
+		public final long timeMs;
+
+		public Analysis(int[] move, double score, int depth, long nodes, long timeMs) {
+			this.move = move;
+			this.score = score;
+			this.depth = depth;
+			this.nodes = nodes;
+			this.timeMs = timeMs;
+		}
+	}
+
+	private int depth = 3;
+	private long timeBudgetMs = 0; // If set, searches as deep as possible in this time instead of using the depth
+
+	// The AI always searches the move of white. Black's moves are searched on a second board
+	// that has the same stones with the colors swapped.
+	// The AIs of a player are only created when the player's first move is searched, so a game
+	// where the engine plays one side takes one transposition table.
+	private Board board;
+	private Board swappedBoard;
+	private Minimax whiteMinimax;
+	private Minimax blackMinimax;
+	private MonteCarloTreeSearch whiteMonteCarlo;
+	private MonteCarloTreeSearch blackMonteCarlo;
+	private boolean monteCarlo;
+	// Settings applied to the AIs created later too
+	private final int ttSizeMB;
+	private final int threadCount;
+	private boolean logging = true;
+	private int vcfDepth = -1, vctDepth = -1; // -1 if not set
+	private SelectiveSearch selectiveSearch; // null if not set
+	private boolean blacksTurn;
+	private int moveCount;
+	private int winner; // 0: There is no winner yet, 1: White wins, 2: Black wins
+
+	public GomokuEngine() {
+		this(Minimax.DEFAULT_TT_SIZE_MB, 1);
+	}
+	// Every player gets a transposition table of the given size.
+	public GomokuEngine(int ttSizeMB, int threadCount) {
+		this.ttSizeMB = ttSizeMB;
+		this.threadCount = threadCount;
+		newGame(DEFAULT_BOARD_SIZE);
+	}
+
+	// Starts a new game on an empty board, black moves first.
+	// Results of the previous games are kept in the transposition tables.
+	public void newGame(int boardSize) {
+		board = new Board(boardSize);
+		swappedBoard = new Board(boardSize);
+		if(whiteMinimax != null) whiteMinimax.setBoard(board);
+		if(blackMinimax != null) blackMinimax.setBoard(swappedBoard);
+		if(whiteMonteCarlo != null) whiteMonteCarlo.setBoard(board);
+		if(blackMonteCarlo != null) blackMonteCarlo.setBoard(swappedBoard);
+		blacksTurn = true;
+		moveCount = 0;
+		winner = 0;
+	}
+
+	// Places a stone of the player to move to the given cell.
+	// returns: false if the cell is not on the board or not empty, or the game is over
+	public boolean play(int posX, int posY) {
+		int boardSize = board.getBoardSize();
+		if(winner != 0 || posX < 0 || posY < 0 || posX >= boardSize || posY >= boardSize) return false;
+		if(!board.addStone(posX, posY, blacksTurn)) return false;
+		swappedBoard.addStoneNoGUI(posX, posY, !blacksTurn);
+		if(board.hasFiveAt(posX, posY)) winner = blacksTurn ? 2 : 1;
+		blacksTurn = !blacksTurn;
+		moveCount++;
+		return true;
+	}
+
+	// Searches the best move of the player to move, without playing it.
+	// returns: {y, x} of the move, or null if there is no move left
+	public int[] bestMove() {
+		return analyze().move;
+	}
+
+	// Searches the best move of the player to move, without playing it.
+	public Analysis analyze() {
+		if(isGameOver()) return new Analysis(null, 0, 0, 0, 0);
+		if(moveCount == 0) {
+			// Nothing to search on an empty board, start in the middle
+			int center = board.getBoardSize() / 2;
+			return new Analysis(new int[] {center, center}, 0, 0, 0, 0);
+		}
+		GomokuAI ai = monteCarlo ? getMonteCarlo(blacksTurn) : getMinimax(blacksTurn);
+		long startTime = System.currentTimeMillis();
+		int[] move = timeBudgetMs > 0 ? ai.calculateNextMove(timeBudgetMs) : ai.calculateNextMove(depth);
+		long timeMs = System.currentTimeMillis() - startTime;
+		if(ai instanceof MonteCarloTreeSearch) {
+			// Playouts are counted as the nodes, there is no score or depth
+			return new Analysis(move, 0, 0, ((MonteCarloTreeSearch)ai).getLastPlayoutCount(), timeMs);
+		}
+		Minimax minimax = (Minimax)ai;
+		return new Analysis(move, minimax.getLastScore(), minimax.getLastDepth(), minimax.getLastEvaluationCount(), timeMs);
+	}
+
+	// Sets the depth of the search. (i.e. how many moves ahead the engine calculates.)
+	public void setDepth(int depth) {
+		this.depth = depth;
+	}
+	// Sets the time a search can take in milliseconds. 0 uses the fixed depth instead.
+	public void setTimeBudget(long timeBudgetMs) {
+		this.timeBudgetMs = timeBudgetMs;
+	}
+
+	// Sets whether the moves are searched with Monte Carlo tree search instead of minimax.
+	// The depth then sets the number of playouts, see MonteCarloTreeSearch.PLAYOUTS_PER_DEPTH.
+	public void setMonteCarlo(boolean monteCarlo) {
+		this.monteCarlo = monteCarlo;
+	}
+
+	// Sets the depth limits of the threat search of minimax, see ThreatSearch. 0, 0 only looks for an immediate five.
+	public void setThreatSearchDepth(int vcfDepth, int vctDepth) {
+		this.vcfDepth = vcfDepth;
+		this.vctDepth = vctDepth;
+		if(whiteMinimax != null) applyThreatSearchDepth(whiteMinimax);
+		if(blackMinimax != null) applyThreatSearchDepth(blackMinimax);
+	}
+	// Sets the moves the minimax search reduces or prunes, see SelectiveSearch.
+	public void setSelectiveSearch(SelectiveSearch selectiveSearch) {
+		this.selectiveSearch = selectiveSearch;
+		if(whiteMinimax != null) whiteMinimax.setSelectiveSearch(selectiveSearch);
+		if(blackMinimax != null) blackMinimax.setSelectiveSearch(selectiveSearch);
+	}
+	// Turns the statistics printed after every search on or off.
+	public void setLogging(boolean logging) {
+		this.logging = logging;
+		if(whiteMinimax != null) whiteMinimax.setLogging(logging);
+		if(blackMinimax != null) blackMinimax.setLogging(logging);
+		if(whiteMonteCarlo != null) whiteMonteCarlo.setLogging(logging);
+		if(blackMonteCarlo != null) blackMonteCarlo.setLogging(logging);
+	}
+
+	// returns: the minimax of the player, created with the settings made so far if it has not searched yet
+	private Minimax getMinimax(boolean black) {
+		Minimax minimax = black ? blackMinimax : whiteMinimax;
+		if(minimax == null) {
+			minimax = new Minimax(black ? swappedBoard : board, ttSizeMB, threadCount);
+			minimax.setLogging(logging);
+			if(vcfDepth >= 0) applyThreatSearchDepth(minimax);
+			if(selectiveSearch != null) minimax.setSelectiveSearch(selectiveSearch);
+			if(black) blackMinimax = minimax;
+			else whiteMinimax = minimax;
+		}
+		return minimax;
+	}
+	private MonteCarloTreeSearch getMonteCarlo(boolean black) {
+		MonteCarloTreeSearch monteCarlo = black ? blackMonteCarlo : whiteMonteCarlo;
+		if(monteCarlo == null) {
+			monteCarlo = new MonteCarloTreeSearch(black ? swappedBoard : board, threadCount);
+			monteCarlo.setLogging(logging);
+			if(black) blackMonteCarlo = monteCarlo;
+			else whiteMonteCarlo = monteCarlo;
+		}
+		return monteCarlo;
+	}
+	private void applyThreatSearchDepth(Minimax minimax) {
+		minimax.setThreatSearch(new ThreatSearch(vcfDepth, vctDepth, ThreatSearch.DEFAULT_NODE_LIMIT));
+	}
+
+	// Returns the board of the game. Stones must only be placed with play.
+	public Board getBoard() {
+		return board;
+	}
+	public boolean isBlacksTurn() {
+		return blacksTurn;
+	}
+	// 0: There is no winner yet, 1: White wins, 2: Black wins
+	public int getWinner() {
+		return winner;
+	}
+	public boolean isGameOver() {
+		return winner != 0 || moveCount == board.getBoardSize() * board.getBoardSize();
+	}
+}
@@ -0,0 +1,178 @@
+public class IncrementalEvaluator {
+
+	// Scores of all consecutive stone sets, precomputed with Minimax.getConsecutiveSetScore
+	// Indexed as blocks * PATTERN_COUNTS + count, sets longer than 6 score the same as 6.
+	private static final int PATTERN_COUNTS = 7;
+	private static final int[] OWN_TURN_SCORES = new int[3 * PATTERN_COUNTS];
+	private static final int[] OPPONENT_TURN_SCORES = new int[3 * PATTERN_COUNTS];
+
+	// A line is scored WINDOW cells at a time, by looking up the own and opponent bits of the
+	// window in the tables below. A set can go on over the end of a window, so the lookup also
+	// takes the state left by the previous window and gives the state for the next one:
+	// 0 -> no set, the previous cell is empty
+	// 1 -> no set, the previous cell is blocked (opponent stone or border)
+	// 2 + (count - 1) * 2 + blockedBefore -> a set of count stones (at most 6) goes on
+	// The tables are indexed as state << 2 * WINDOW | own << WINDOW | opponent, and give the
+	// scores of the sets that end in the window and the next state. 4 cells divide 64, so the
+	// windows of a line never go over the end of a long.
+	private static final int WINDOW = 4;
+	private static final int WINDOW_MASK = (1 << WINDOW) - 1;
+	private static final int STATE_COUNT = 2 + 2 * (PATTERN_COUNTS - 1);
+	private static final int START_STATE = 1; // The border is before the first cell
+	private static final int[] WINDOW_OWN_TURN_SCORES = new int[STATE_COUNT << 2 * WINDOW];
+	private static final int[] WINDOW_OPPONENT_TURN_SCORES = new int[STATE_COUNT << 2 * WINDOW];
+	private static final byte[] NEXT_STATES = new byte[STATE_COUNT << 2 * WINDOW];
+	// Scores of the set a state leaves at the end of the line, where the border blocks it
+	private static final int[] END_OWN_TURN_SCORES = new int[STATE_COUNT];
+	private static final int[] END_OPPONENT_TURN_SCORES = new int[STATE_COUNT];
+	static {
+		for(int blocks=0; blocks<=2; blocks++) {
+			for(int count=1; count<PATTERN_COUNTS; count++) {
+				OWN_TURN_SCORES[blocks * PATTERN_COUNTS + count] = Minimax.getConsecutiveSetScore(count, blocks, true);
+				OPPONENT_TURN_SCORES[blocks * PATTERN_COUNTS + count] = Minimax.getConsecutiveSetScore(count, blocks, false);
+			}
+		}
+		for(int state=0; state<STATE_COUNT; state++) {
+			int count = state < 2 ? 0 : (state - 2) / 2 + 1;
+			int blockedBefore = state < 2 ? state : (state - 2) % 2;
+			if(count > 0) {
+				END_OWN_TURN_SCORES[state] = OWN_TURN_SCORES[(blockedBefore + 1) * PATTERN_COUNTS + count];
+				END_OPPONENT_TURN_SCORES[state] = OPPONENT_TURN_SCORES[(blockedBefore + 1) * PATTERN_COUNTS + count];
+			}
+			for(int own=0; own<=WINDOW_MASK; own++) {
+				for(int opponent=0; opponent<=WINDOW_MASK; opponent++) {
+					if((own & opponent) != 0) continue; // A cell can not have both stones
+					int index = state << 2 * WINDOW | own << WINDOW | opponent;
+					// Walk the cells of the window like evaluateDirections in Minimax
+					int setCount = count, setBlockedBefore = blockedBefore;
+					int previousBlocked = blockedBefore;
+					for(int i=0; i<WINDOW; i++) {
+						int blocked = opponent >>> i & 1;
+						if((own >>> i & 1) != 0) {
+							if(setCount == 0) setBlockedBefore = previousBlocked;
+							setCount = Math.min(setCount + 1, PATTERN_COUNTS - 1);
+						} else {
+							if(setCount > 0) {
+								int pattern = (setBlockedBefore + blocked) * PATTERN_COUNTS + setCount;
+								WINDOW_OWN_TURN_SCORES[index] += OWN_TURN_SCORES[pattern];
+								WINDOW_OPPONENT_TURN_SCORES[index] += OPPONENT_TURN_SCORES[pattern];
+								setCount = 0;
+							}
+							previousBlocked = blocked;
+						}
+					}
+					NEXT_STATES[index] = (byte)(setCount == 0 ? previousBlocked : 2 + (setCount - 1) * 2 + setBlockedBefore);
+				}
+			}
+		}
+	}
+
+	// Scores of every line of the board, indexed as [color][turn][line]
+	// color: 0 -> white, 1 -> black
+	// turn: 0 -> opponent's turn, 1 -> the color's own turn
+	// line: rows first, then columns, then bottom-left to top-right diagonals and
+	//       top-left to bottom-right diagonals
+	private final int[][][] lineScores;
+	// Sum of all line scores, indexed as [color][turn]
+	private final int[][] totalScores;
+
+	public IncrementalEvaluator(int boardSize) {
+		int lineCount = 2 * boardSize + 2 * (2 * boardSize - 1);
+		lineScores = new int[2][2][lineCount];
+		totalScores = new int[2][2];
+	}
+	// Copy constructor
+	public IncrementalEvaluator(IncrementalEvaluator evaluator) {
+		lineScores = new int[2][2][];
+		totalScores = new int[2][2];
+		for(int c=0; c<2; c++) {
+			for(int t=0; t<2; t++) {
+				lineScores[c][t] = evaluator.lineScores[c][t].clone();
+				totalScores[c][t] = evaluator.totalScores[c][t];
+			}
+		}
+	}
+
+	// Returns the same value as evaluateHorizontal + evaluateVertical + evaluateDiagonal in Minimax,
+	// without scanning the board.
+	public int getScore(boolean forBlack, boolean currentTurn) {
+		return totalScores[forBlack ? 1 : 0][currentTurn ? 1 : 0];
+	}
+
+	// Re-evaluates a line of the board from its bitboards.
+	// Must be called for the four lines through a cell every time a stone is added to or removed from it.
+	public void updateLine(int line, long whiteBits, long blackBits, int length) {
+		long white = evaluateLine(whiteBits, blackBits, length);
+		long black = evaluateLine(blackBits, whiteBits, length);
+		setLineScore(0, 0, line, (int)white);
+		setLineScore(0, 1, line, (int)(white >>> 32));
+		setLineScore(1, 0, line, (int)black);
+		setLineScore(1, 1, line, (int)(black >>> 32));
+	}
+
+	// Calculates the score of the consecutive stone sets of a single line for both turns.
+	// Gives the same score as Minimax.evaluateDirections: a set is blocked on a side if the
+	// cell next to it is the border of the board or an opponent stone.
+	// returns: own turn score in the high 32 bits, opponent's turn score in the low 32 bits
+	private static long evaluateLine(long own, long opponent, int length) {
+		if(own == 0) return 0;
+		// The cells after the end of the line block like opponent stones
+		if(length < 64) opponent |= -1L << length;
+		int state = START_STATE;
+		int ownTurnScore = 0;
+		int opponentTurnScore = 0;
+		for(int shift=0; shift<length; shift+=WINDOW) {
+			int index = state << 2 * WINDOW | (int)(own >>> shift & WINDOW_MASK) << WINDOW | (int)(opponent >>> shift & WINDOW_MASK);
+			ownTurnScore += WINDOW_OWN_TURN_SCORES[index];
+			opponentTurnScore += WINDOW_OPPONENT_TURN_SCORES[index];
+			state = NEXT_STATES[index];
+		}
+		ownTurnScore += END_OWN_TURN_SCORES[state];
+		opponentTurnScore += END_OPPONENT_TURN_SCORES[state];
+		return ((long)ownTurnScore << 32) | (opponentTurnScore & 0xFFFFFFFFL);
+	}
+	// Re-evaluates a line of a sparse board from its bitboards in words of 64 cells, see updateLine.
+	public void updateLine(int line, long[] whiteWords, long[] blackWords, int length) {
+		long white = evaluateLine(whiteWords, blackWords, length);
+		long black = evaluateLine(blackWords, whiteWords, length);
+		setLineScore(0, 0, line, (int)white);
+		setLineScore(0, 1, line, (int)(white >>> 32));
+		setLineScore(1, 0, line, (int)black);
+		setLineScore(1, 1, line, (int)(black >>> 32));
+	}
+
+	// Scores a line that is longer than a long like evaluateLine above, carrying the state of the
+	// windows from one word to the next.
+	private static long evaluateLine(long[] own, long[] opponent, int length) {
+		int state = START_STATE;
+		int ownTurnScore = 0;
+		int opponentTurnScore = 0;
+		for(int word=0; word<own.length; word++) {
+			int wordLength = Math.min(64, length - word * 64);
+			long opponentBits = opponent[word];
+			// The cells after the end of the line block like opponent stones
+			if(wordLength < 64) opponentBits |= -1L << wordLength;
+			if(own[word] == 0) {
+				// Only the set left by the previous word can end here, at the first cell
+				int index = state << 2 * WINDOW | (int)(opponentBits & WINDOW_MASK);
+				ownTurnScore += WINDOW_OWN_TURN_SCORES[index];
+				opponentTurnScore += WINDOW_OPPONENT_TURN_SCORES[index];
+				state = (int)(opponentBits >>> 63);
+				continue;
+			}
+			for(int shift=0; shift<wordLength; shift+=WINDOW) {
+				int index = state << 2 * WINDOW | (int)(own[word] >>> shift & WINDOW_MASK) << WINDOW | (int)(opponentBits >>> shift & WINDOW_MASK);
+				ownTurnScore += WINDOW_OWN_TURN_SCORES[index];
+				opponentTurnScore += WINDOW_OPPONENT_TURN_SCORES[index];
+				state = NEXT_STATES[index];
+			}
+		}
+		ownTurnScore += END_OWN_TURN_SCORES[state];
+		opponentTurnScore += END_OPPONENT_TURN_SCORES[state];
+		return ((long)ownTurnScore << 32) | (opponentTurnScore & 0xFFFFFFFFL);
+	}
+	private void setLineScore(int color, int turn, int line, int score) {
+		totalScores[color][turn] += score - lineScores[color][turn][line];
+		lineScores[color][turn][line] = score;
+	}
+}
@@ -5,20 +5,32 @@ import java.awt.event.ActionListener;
 
 public class MainClass {
 	
+	// Arguments: [board size] [mcts]
+	// board size: 19 if not given, at most Board.MAX_BOARD_SIZE
+	// mcts: the AI plays with Monte Carlo tree search instead of minimax
 	public static void main(String[] args) {
 		
+		int boardSize = args.length > 0 ? Integer.parseInt(args[0]) : 19;
+		if(boardSize < 5 || boardSize > Board.MAX_BOARD_SIZE) {
+			System.out.println("Board size must be between 5 and " + Board.MAX_BOARD_SIZE);
+			return;
+		}
+		final boolean monteCarlo = args.length > 1 && args[1].equals("mcts");
+		
 		// Create the MainGUI instance.
 		final int width = 760;
 		final MainGUI gui = new MainGUI(width,width, "GoMoku");
 		
-		// Create a 19x19 game board.
-		Board board = new Board(width, 19);
+		// Create the game board (19x19 by default) and the GUI component that draws it.
+		Board board = new Board(boardSize);
+		BoardGUI boardGUI = new BoardGUI(width, boardSize);
+		board.setObserver(boardGUI);
 		
 		// Create the Game manager instance.
-		final Game game = new Game(board);
+		final Game game = new Game(board, boardGUI);
 		
 		// Attach the game board's GUI component to the main frame.
-		gui.attachBoard(board.getGUI());
+		gui.attachBoard(boardGUI);
 		
 		// Make the frame wrap the contents and set it visible.
 		gui.pack();
@@ -33,15 +45,18 @@ public class MainClass {
 				Object[] settings = gui.fetchSettings();
 				int depth = (Integer)(settings[0]);
 				boolean computerStarts = (Boolean)(settings[1]);
+				int timePerMove = (Integer)(settings[2]);
 				
-				System.out.println("Depth: " + depth + " AI Makes the first move: " + computerStarts );
+				System.out.println("Depth: " + depth + " AI Makes the first move: " + computerStarts + " Time per move: " + timePerMove + " ms");
 				
 				// Make the game board visible to the user.
 				gui.showBoard();
 				
 				// Apply the settings.
 				game.setAIDepth(depth);
+				game.setAITimeBudget(timePerMove);
 				game.setAIStarts(computerStarts);
+				game.setAIMonteCarlo(monteCarlo);
 				
 				// Start the game.
 				game.start();
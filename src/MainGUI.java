@@ -7,6 +7,8 @@ import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JRadioButton;
+import javax.swing.JSpinner;
+import javax.swing.SpinnerNumberModel;
 
 
 public class MainGUI extends JFrame {
@@ -18,11 +20,13 @@ public class MainGUI extends JFrame {
 	
 	private int difficulty;
 	private boolean computerStarts;
+	private int timePerMove;
 	
 	private JPanel boardPanel;
 	private final JPanel setupPanel;
 	private final JPanel difficultyPanel;
 	private final JPanel startingPlayerPanel;
+	private final JPanel timePanel;
 	
 	
 	private final JButton buttonStart;
@@ -38,6 +42,10 @@ public class MainGUI extends JFrame {
 	private final JLabel taDifficulty;
 	private final JLabel taStartingPlayer;
 	
+	// Time per move in ms, 0 to search to the depth of the difficulty
+	private final JSpinner spTimePerMove;
+	private final JLabel taTimePerMove;
+	
 	public MainGUI(int width, int height, String title) {
 		setSize(width, height);
 		setTitle(title);
@@ -48,6 +56,7 @@ public class MainGUI extends JFrame {
 		setupPanel.setLayout(new BoxLayout(setupPanel, BoxLayout.PAGE_AXIS));
 		difficultyPanel = new JPanel();
 		startingPlayerPanel = new JPanel();
+		timePanel = new JPanel();
 		
 		buttonStart = new JButton("Start Game");
 		
@@ -69,6 +78,9 @@ public class MainGUI extends JFrame {
 		taDifficulty = new JLabel("Difficulty: ");
 		taStartingPlayer = new JLabel("starts first.");
 		
+		spTimePerMove = new JSpinner(new SpinnerNumberModel(0, 0, 60000, 500));
+		taTimePerMove = new JLabel("Time per move (ms, 0: difficulty depth): ");
+		
 		rbNormal.setSelected(true);
 		rbComputer.setSelected(true);
 		
@@ -80,8 +92,12 @@ public class MainGUI extends JFrame {
 		startingPlayerPanel.add(rbHuman);
 		startingPlayerPanel.add(taStartingPlayer);
 		
+		timePanel.add(taTimePerMove);
+		timePanel.add(spTimePerMove);
+		
 		setupPanel.add(difficultyPanel);
 		setupPanel.add(startingPlayerPanel);
+		setupPanel.add(timePanel);
 		setupPanel.add(buttonStart);
 		
 		add(setupPanel);
@@ -96,7 +112,8 @@ public class MainGUI extends JFrame {
 		} else difficulty = 3;
 		
 		computerStarts = rbComputer.isSelected();
-		Object[] x = {difficulty, computerStarts};
+		timePerMove = (Integer)spTimePerMove.getValue();
+		Object[] x = {difficulty, computerStarts, timePerMove};
 		return x;
 	}
 	public void listenGameStartButton(ActionListener listener) {
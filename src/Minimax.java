@@ -1,20 +1,270 @@
-import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 
-public class Minimax {
+public class Minimax implements GomokuAI {
 	
-	// This variable is used to track the number of evaluations for benchmarking purposes.
-	public static int evaluationCount = 0;
 	// Board instance is responsible for board mechanics
 	private Board board;
 	// Win score should be greater than all possible board scores
 	private static final int WIN_SCORE = 100_000_000;
+	// Default size of the transposition table in megabytes
+	public static final int DEFAULT_TT_SIZE_MB = 32;
+	// Deepest search of the time budgeted mode
+	private static final int MAX_DEPTH = 32;
+	// Transposition table keeps the scores of the positions searched before, shared by all search threads
+	private final TranspositionTable tt;
+	// The main search decides the move, helpers only fill the transposition table.
+	private SearchThread mainSearch;
+	private SearchThread[] helperSearches = new SearchThread[0];
+	// Every thread searches on its own copy of the board. The copies are kept between the searches
+	// and only the stones played since are placed on them.
+	private Board searchBoard;
+	private Board[] helperBoards = new Board[0];
+	private ExecutorService helperPool;
+	// Pondering searches the likely replies of the player in the background, while it is the player's turn.
+	private static final int PONDER_REPLY_COUNT = 4;
+	private SearchThread ponderSearch;
+	private ExecutorService ponderPool;
+	private Future<?> ponderResult;
+	private volatile boolean ponderStopped;
+	// Looks for forced wins before the minimax search
+	private ThreatSearch threatSearch = new ThreatSearch();
+	// Moves the minimax search reduces or prunes, used by all search threads
+	private SelectiveSearch selectiveSearch = SelectiveSearch.NONE;
+	// Results of the previous runs of the program, optional
+	private PositionCache positionCache;
+	private final long[] cacheEntry = new long[2];
+	private final long[] ttEntry = new long[2];
+	private final long[] ponderEntry = new long[2];
+	// Number of positions evaluated by the last calculateNextMove call, used for benchmarking
+	private long lastEvaluationCount;
+	// Prints the statistics of every search if set
+	private boolean logging = true;
+	// Score and depth of the last calculateNextMove call
+	private double lastScore;
+	private int lastDepth;
 
 	// Constructor
 	public Minimax(Board board) {
+		this(board, DEFAULT_TT_SIZE_MB, 1);
+	}
+	public Minimax(Board board, int ttSizeMB) {
+		this(board, ttSizeMB, 1);
+	}
+	// With threadCount > 1 the search runs on several threads. The results of the fixed depth
+	// mode are only reproducible with a single thread.
+	public Minimax(Board board, int ttSizeMB, int threadCount) {
 		this.board = board;
+		this.tt = new TranspositionTable(ttSizeMB);
+		this.mainSearch = new SearchThread(tt);
+		setThreadCount(threadCount);
+	}
+	
+	// Changes the board the AI plays on, e.g. for a new game. The board can have a different size.
+	public void setBoard(Board board) {
+		this.board = board;
+	}
+	
+	// Replaces the threat search that runs before the minimax search, e.g. with other depth limits.
+	public void setThreatSearch(ThreatSearch threatSearch) {
+		this.threatSearch = threatSearch;
 	}
 	
+	// Sets the moves that the minimax search reduces or prunes, see SelectiveSearch.
+	// SelectiveSearch.NONE searches every move to the full depth.
+	public void setSelectiveSearch(SelectiveSearch selectiveSearch) {
+		stopPondering();
+		this.selectiveSearch = selectiveSearch;
+		mainSearch.setSelectiveSearch(selectiveSearch);
+		for(SearchThread helper : helperSearches) {
+			helper.setSelectiveSearch(selectiveSearch);
+		}
+		if(ponderSearch != null) ponderSearch.setSelectiveSearch(selectiveSearch);
+	}
+	
+	// Turns the statistics printed after every search on or off.
+	public void setLogging(boolean logging) {
+		this.logging = logging;
+	}
+	
+	// Sets the number of threads used for searching, including the calling thread.
+	public void setThreadCount(int threadCount) {
+		if(helperPool != null) helperPool.shutdown();
+		helperPool = null;
+		helperSearches = new SearchThread[Math.max(0, threadCount - 1)];
+		helperBoards = new Board[helperSearches.length];
+		for(int i=0; i<helperSearches.length; i++) {
+			helperSearches[i] = new SearchThread(tt);
+			helperSearches[i].setSelectiveSearch(selectiveSearch);
+		}
+		if(helperSearches.length > 0) {
+			helperPool = Executors.newFixedThreadPool(helperSearches.length, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					// Helper threads should not keep the application running
+					Thread thread = new Thread(r, "minimax-helper");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+	
+	// Sets the cache that keeps the results of the searches across runs of the program, null for none.
+	// The result of every search is stored in it, and a position searched deep enough before is not
+	// searched again.
+	public void setPositionCache(PositionCache positionCache) {
+		this.positionCache = positionCache;
+	}
+
+	// Forgets the positions searched before and the move ordering learned from them, the next
+	// search starts like the first one.
+	public void clearCache() {
+		stopPondering();
+		tt.clear();
+		mainSearch.clearMoveOrdering();
+		for(SearchThread helper : helperSearches) {
+			helper.clearMoveOrdering();
+		}
+		if(ponderSearch != null) ponderSearch.clearMoveOrdering();
+	}
+
+	// Replaces the transposition table with an empty one of the given size. The other settings of
+	// the AI are kept.
+	public void resizeTranspositionTable(int sizeMB) {
+		stopPondering();
+		tt.resize(sizeMB);
+	}
+
+	// Returns the number of positions evaluated by the last calculateNextMove call,
+	// including the positions of the threat search and of the helper threads.
+	public long getLastEvaluationCount() {
+		return lastEvaluationCount;
+	}
+
+	// Starts searching the positions after the most likely replies of the player in the background.
+	// The results go into the transposition table and the position cache, so that the next
+	// calculateNextMove call finds its position already searched if the player played one of them,
+	// and starts with the partial results otherwise.
+	// depth: depth to search every reply to, or 0 to search them as deep as possible until stopped
+	// The player is to move on the board. Pondering stops at the next calculateNextMove call.
+	public void startPondering(final int depth) {
+		stopPondering();
+		if(ponderPool == null) {
+			ponderSearch = new SearchThread(tt);
+			ponderSearch.setSelectiveSearch(selectiveSearch);
+			ponderPool = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "minimax-ponder");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		final Board ponderBoard = new Board(board);
+		// The positions searched from now on follow the player's reply
+		tt.newGeneration();
+		ponderStopped = false;
+		ponderResult = ponderPool.submit(new Runnable() {
+			public void run() {
+				ponder(ponderBoard, depth);
+			}
+		});
+	}
+	// Stops pondering and waits until the background search has left the transposition table alone.
+	public void stopPondering() {
+		if(ponderResult == null) return;
+		ponderStopped = true;
+		ponderSearch.stop();
+		try {
+			ponderResult.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		ponderResult = null;
+	}
+	
+	// Searches the replies one depth at a time: every reply is searched to a depth before any is
+	// searched deeper, so that all of them get their share of the player's time. The transposition
+	// table keeps the results of a reply between its iterations, like iterative deepening does.
+	private void ponder(Board ponderBoard, int depth) {
+		int boardSize = ponderBoard.getBoardSize();
+		int[] replies = new int[PONDER_REPLY_COUNT];
+		int replyCount = predictReplies(ponderBoard, replies);
+		int startDepth = depth > 0 ? depth : 1;
+		int maxDepth = depth > 0 ? depth : MAX_DEPTH;
+		for(int iterationDepth=startDepth; iterationDepth<=maxDepth && !ponderStopped; iterationDepth++) {
+			for(int i=0; i<replyCount; i++) {
+				int posX = replies[i] % boardSize;
+				int posY = replies[i] / boardSize;
+				// A stop requested before prepare would be cleared by it, so check the flag after it.
+				ponderSearch.prepare(0);
+				if(ponderStopped) break;
+				ponderBoard.addStoneNoGUI(posX, posY, true);
+				ponderSearch.search(ponderBoard, iterationDepth, iterationDepth, Long.MAX_VALUE);
+				// Keep the result of a finished search like calculateNextMove does
+				long hash = ponderBoard.getZobristHash();
+				if(!ponderStopped && positionCache != null && tt.probe(hash, ponderEntry)) {
+					positionCache.store(ponderBoard, ponderEntry);
+				}
+				ponderBoard.removeStoneNoGUI(posX, posY);
+			}
+		}
+		ponderSearch.resetEvaluationCount();
+	}
+	// Lists the most likely replies of the player (black): the best reply found by the last search
+	// first, then the replies that leave white with the lowest score.
+	// returns: number of replies
+	private int predictReplies(Board ponderBoard, int[] replies) {
+		int boardSize = ponderBoard.getBoardSize();
+		int[] moves = new int[ponderBoard.getMoveBufferSize(0)];
+		int moveCount = ponderBoard.generateMoves(moves);
+		double[] scores = new double[replies.length];
+		int replyCount = 0;
+		if(tt.probe(ponderBoard.getZobristHash() ^ Zobrist.BLACK_TO_MOVE, ponderEntry)) {
+			int move = TranspositionTable.moveOf(ponderEntry);
+			if(move >= 0 && move < boardSize * boardSize && ponderBoard.getCell(move % boardSize, move / boardSize) == 0) {
+				replies[replyCount] = move;
+				scores[replyCount++] = Double.NEGATIVE_INFINITY;
+			}
+		}
+		for(int i=0; i<moveCount; i++) {
+			int move = moves[i];
+			if(replyCount > 0 && replies[0] == move) continue;
+			ponderBoard.addStoneNoGUI(move % boardSize, move / boardSize, true);
+			double score = evaluateBoardForWhite(ponderBoard, false);
+			ponderBoard.removeStoneNoGUI(move % boardSize, move / boardSize);
+			// Keep the list sorted by score, lowest first
+			if(replyCount == replies.length && score >= scores[replyCount - 1]) continue;
+			int j = Math.min(replyCount, replies.length - 1);
+			while(j > 0 && scores[j - 1] > score) {
+				replies[j] = replies[j - 1];
+				scores[j] = scores[j - 1];
+				j--;
+			}
+			replies[j] = move;
+			scores[j] = score;
+			if(replyCount < replies.length) replyCount++;
+		}
+		return replyCount;
+	}
+
+	// Returns the score of the move found by the last calculateNextMove call, as evaluateBoardForWhite
+	// gives it. A forced win found by the threat search scores the win score.
+	public double getLastScore() {
+		return lastScore;
+	}
+	// Returns the depth the last calculateNextMove call searched to, 0 for a forced win found by the
+	// threat search.
+	public int getLastDepth() {
+		return lastDepth;
+	}
+
 	// Getter function for the winScore 
 	public static int getWinScore() {
 		return WIN_SCORE;
@@ -24,7 +274,6 @@ public class Minimax {
 	// (i.e. how likely is white player to win the game before the black player)
 	// This value will be used as the score in the Minimax algorithm.
 	public static double evaluateBoardForWhite(Board board, boolean blacksTurn) {
-		evaluationCount++; 
 		
 		// Get board score of both players.
 		double blackScore = getScore(board, true, blacksTurn);
@@ -39,7 +288,15 @@ public class Minimax {
 	// This function calculates the board score of the specified player.
 	// (i.e. How good a player's general standing on the board by considering how many 
 	//  consecutive 2's, 3's, 4's it has, how many of them are blocked etc...)
+	// The board keeps the score of every line up to date as the stones are placed, so this is
+	// the same as evaluating all 3 directions with the functions below without scanning the board.
 	public static int getScore(Board board, boolean forBlack, boolean blacksTurn) {
+		return board.getScore(forBlack, blacksTurn);
+	}
+	
+	// Calculates the board score of the specified player by scanning the whole board.
+	// Too slow for the search, but useful to verify the incremental scores.
+	public static int getScoreFullScan(Board board, boolean forBlack, boolean blacksTurn) {
 		
 		// Read the board
 		int[][] boardMatrix = board.getBoardMatrix();
@@ -51,196 +308,160 @@ public class Minimax {
 	}
 	
 	// This function is used to get the next intelligent move to make for the AI.
+	// Searches the minimax tree with the specified depth, the result only depends on the board.
+	// returns: {y, x} of the move, or null if there is no move left
 	public int[] calculateNextMove(int depth) {
+		return calculateNextMove(depth, depth, Long.MAX_VALUE);
+	}
+	
+	// This function is used to get the next intelligent move within the given time.
+	// The tree is searched with increasing depths (iterative deepening), starting every iteration
+	// with the best move of the previous one. When the time is up the unfinished iteration is
+	// dropped and the best move of the deepest finished iteration is returned.
+	// returns: {y, x} of the move, or null if there is no move left
+	public int[] calculateNextMove(long timeBudgetMs) {
+		return calculateNextMove(1, MAX_DEPTH, System.nanoTime() + timeBudgetMs * 1_000_000);
+	}
+	
+	private int[] calculateNextMove(int startDepth, int maxDepth, long deadline) {
+		// The background search of the replies uses the same table, it has done its job now.
+		// It has started the generation of the table for this position, otherwise start it here.
+		if(ponderResult == null) tt.newGeneration();
+		stopPondering();
+
 		// Block the board for AI to make a decision.
 		board.thinkingStarted();
 
 		int[] move = new int[2];
+		int boardSize = board.getBoardSize();
 
 		// Used for benchmarking purposes only.
 		long startTime = System.currentTimeMillis();
+		long startNanos = System.nanoTime();
+		SearchEvent event = new SearchEvent();
+		event.begin();
 
-		// Check if any available move can finish the game to make sure the AI always
-		// takes the opportunity to finish the game.
-		Object[] bestMove = searchWinningMove(board);
+		// The search works on a copy, so the board of the game is never changed while searching.
+		// Usually the copy only needs the move of the AI and the reply of the player.
+		if(searchBoard == null || searchBoard.getBoardSize() != boardSize) searchBoard = new Board(board);
+		else searchBoard.copyStonesFrom(board);
+		Board dummyBoard = searchBoard;
 
-		if(bestMove != null ) {
-			// Finishing move is found.
-			move[0] = (Integer)(bestMove[1]);
-			move[1] = (Integer)(bestMove[2]);
-			
-		} else {
-			// If there is no such move, search the minimax tree with specified depth.
-			bestMove = minimaxSearchAB(depth, new Board(board), true, -1.0, getWinScore());
-			if(bestMove[1] == null) {
-				move = null;
-			} else {
-				move[0] = (Integer)(bestMove[1]);
-				move[1] = (Integer)(bestMove[2]);
+		// Check if the AI can force a win with threats (fours, then open threes) the player has to
+		// answer. This also makes sure the AI always takes the opportunity to finish the game.
+		int bestMove = threatSearch.findWinningMove(dummyBoard, false);
+		lastScore = WIN_SCORE;
+		lastDepth = 0;
+
+		if(bestMove < 0) {
+			// A result from a previous run of the program is used like a result of this search:
+			// it is returned if it is deep enough, and its move is searched first otherwise.
+			// It is white's turn at the root.
+			long rootHash = dummyBoard.getZobristHash();
+			if(positionCache != null && positionCache.probe(dummyBoard, cacheEntry) &&
+			   (!tt.probe(rootHash, ttEntry) || TranspositionTable.depthOf(ttEntry) < TranspositionTable.depthOf(cacheEntry))) {
+				tt.store(rootHash, TranspositionTable.scoreOf(cacheEntry), TranspositionTable.boundOf(cacheEntry),
+						TranspositionTable.depthOf(cacheEntry), TranspositionTable.moveOf(cacheEntry));
+			}
+
+			// If there is no such move, search the minimax tree.
+			// Helper threads search the same tree on their own boards and fill the shared transposition
+			// table (Lazy SMP). Half of them search one ply deeper, and each starts at a different root move,
+			// so the main thread finds more of its subtrees already searched.
+			Future<?>[] helperResults = new Future<?>[helperSearches.length];
+			for(int i=0; i<helperSearches.length; i++) {
+				final SearchThread helper = helperSearches[i];
+				if(helperBoards[i] == null || helperBoards[i].getBoardSize() != boardSize) helperBoards[i] = new Board(board);
+				else helperBoards[i].copyStonesFrom(board);
+				final Board helperBoard = helperBoards[i];
+				final int helperStartDepth = Math.min(startDepth + (i % 2), maxDepth);
+				helper.prepare(i + 1);
+				helperResults[i] = helperPool.submit(new Runnable() {
+					public void run() {
+						helper.search(helperBoard, helperStartDepth, maxDepth, deadline);
+					}
+				});
+			}
+			mainSearch.prepare(0);
+			bestMove = mainSearch.search(dummyBoard, startDepth, maxDepth, deadline);
+			// The main thread decides, stop the helpers and wait for them to leave the table alone.
+			for(int i=0; i<helperSearches.length; i++) {
+				helperSearches[i].stop();
+			}
+			for(Future<?> helperResult : helperResults) {
+				try {
+					helperResult.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (ExecutionException e) {
+					throw new RuntimeException(e.getCause());
+				}
 			}
+			lastDepth = mainSearch.getDepthReached();
+			if(tt.probe(rootHash, cacheEntry)) {
+				lastScore = TranspositionTable.scoreOf(cacheEntry);
+				if(positionCache != null) positionCache.store(dummyBoard, cacheEntry);
+			}
+		}
+		if(bestMove < 0) {
+			move = null;
+		} else {
+			move[0] = bestMove / boardSize;
+			move[1] = bestMove % boardSize;
 		}
-		System.out.println("Cases calculated: " + evaluationCount + " Calculation time: " + (System.currentTimeMillis() - startTime) + " ms");
+		long evaluationCount = mainSearch.getEvaluationCount() + threatSearch.getNodeCount();
+		for(SearchThread helper : helperSearches) {
+			evaluationCount += helper.getEvaluationCount();
+		}
+		lastEvaluationCount = evaluationCount;
+		event.end();
+		recordStatistics(event, System.nanoTime() - startNanos);
+		if(logging) System.out.println("Cases calculated: " + evaluationCount + " Depth: " + lastDepth + " Threads: " + (helperSearches.length + 1) + " Calculation time: " + (System.currentTimeMillis() - startTime) + " ms");
 		board.thinkingFinished();
 		
-		evaluationCount=0;
-		
 		return move;
 	}
 	
-	
-	/*
-	 * alpha : Best AI Move (Max)
-	 * beta : Best Player Move (Min)
-	 * returns: {score, move[0], move[1]}
-	 * */
-	private static Object[] minimaxSearchAB(int depth, Board dummyBoard, boolean max, double alpha, double beta) {
-
-		// Last depth (terminal node), evaluate the current board score.
-		if(depth == 0) {
-			Object[] x = {evaluateBoardForWhite(dummyBoard, !max), null, null};
-			return x;
-		}
-		
-		// Generate all possible moves from this node of the Minimax Tree
-		/*
-		 *                  (Move 1)
-		 *	               /
-		 *  (Current Node) --- (Move 2)
-		 *				   \   ...
-		 *                  (Move N)
-		 */
-		ArrayList<int[]> allPossibleMoves = dummyBoard.generateMoves();
-		
-		// If there is no possible move left, treat this node as a terminal node and return the score.
-		if(allPossibleMoves.size() == 0) {
-			Object[] x = {evaluateBoardForWhite(dummyBoard, !max), null, null};
-			return x;
-		}
-		
-		Object[] bestMove = new Object[3];
-		
-		// Generate Minimax Tree and calculate node scores.
-		if(max) {
-			// Initialize the starting best move with -infinity.
-			bestMove[0] = -1.0;
-			// Iterate for all possible moves that can be made.
-			for(int[] move : allPossibleMoves) {
-
-				// Play the move on that temporary board without drawing anything
-				dummyBoard.addStoneNoGUI(move[1], move[0], false);
-				
-				// Call the minimax function for the next depth, to look for a minimum score.
-				// This function recursively generates new Minimax trees branching from this node 
-				// (if the depth > 0) and searches for the minimum white score in each of the sub trees.
-				// We will find the maximum score of this depth, among the minimum scores found in the
-				// lower depth.
-				Object[] tempMove = minimaxSearchAB(depth-1, dummyBoard, false, alpha, beta);
-
-				// backtrack and remove
-				dummyBoard.removeStoneNoGUI(move[1],move[0]);
-
-				// Updating alpha (alpha value holds the maximum score)
-				// When searching for the minimum, if the score of a node is lower than the alpha 
-				// (max score of uncle nodes from one upper level) the whole subtree originating
-				// from that node will be discarded, since the maximizing player will choose the 
-				// alpha node over any node with a score lower than the alpha. 
-				if((Double)(tempMove[0]) > alpha) {
-					alpha = (Double)(tempMove[0]);
-				}
-				// Pruning with beta
-				// Beta value holds the minimum score among the uncle nodes from one upper level.
-				// We need to find a score lower than this beta score, because any score higher than
-				// beta will be eliminated by the minimizing player (upper level). If the score is
-				// higher than (or equal to) beta, break out of loop discarding any remaining nodes 
-				// and/or subtrees and return the last move.
-				if((Double)(tempMove[0]) >= beta) {
-					return tempMove;
-				}
-
-				// Find the move with the maximum score.
-				if((Double)tempMove[0] > (Double)bestMove[0]) {
-					bestMove = tempMove;
-					bestMove[1] = move[0];
-					bestMove[2] = move[1];
-				}
+	// Sends the statistics of the search of all threads to the flight recorder and to SearchMetrics,
+	// if they are enabled, and resets the counters of the threads.
+	private void recordStatistics(SearchEvent event, long nanos) {
+		SearchMetrics metrics = SearchMetrics.getRegistered();
+		if(metrics != null || event.shouldCommit()) {
+			long nodes = 0, evaluations = 0, cutoffs = 0, firstMoveCutoffs = 0, ttProbes = 0, ttHits = 0;
+			for(int i=-1; i<helperSearches.length; i++) {
+				SearchThread search = i < 0 ? mainSearch : helperSearches[i];
+				nodes += search.getNodeCount();
+				evaluations += search.getEvaluationCount();
+				cutoffs += search.getCutoffCount();
+				firstMoveCutoffs += search.getFirstMoveCutoffCount();
+				ttProbes += search.getTTProbeCount();
+				ttHits += search.getTTHitCount();
 			}
-		}
-		else {
-			// Initialize the starting best move using the first move in the list and +infinity score.
-			bestMove[0] = 100_000_000.0;
-			bestMove[1] = allPossibleMoves.get(0)[0];
-			bestMove[2] = allPossibleMoves.get(0)[1];
-			
-			// Iterate for all possible moves that can be made.
-			for(int[] move : allPossibleMoves) {
-				// Create a temporary board that is equivalent to the current board
-
-				// Play the move on that temporary board without drawing anything
-				dummyBoard.addStoneNoGUI(move[1], move[0], true);
-				
-				// Call the minimax function for the next depth, to look for a maximum score.
-				// This function recursively generates new Minimax trees branching from this node 
-				// (if the depth > 0) and searches for the maximum white score in each of the sub trees.
-				// We will find the minimum score of this depth, among the maximum scores found in the
-				// lower depth.
-				Object[] tempMove = minimaxSearchAB(depth-1, dummyBoard, true, alpha, beta);
-
-				dummyBoard.removeStoneNoGUI(move[1],move[0]);
-				
-				// Updating beta (beta value holds the minimum score)
-				// When searching for the maximum, if the score of a node is higher than the beta 
-				// (min score of uncle nodes from one upper level) the whole subtree originating
-				// from that node will be discarded, since the minimizing player will choose the 
-				// beta node over any node with a score higher than the beta. 
-				if(((Double)tempMove[0]) < beta) {
-					beta = (Double)(tempMove[0]);
-				}
-				// Pruning with alpha
-				// Alpha value holds the maximum score among the uncle nodes from one upper level.
-				// We need to find a score higher than this alpha score, because any score lower than
-				// alpha will be eliminated by the maximizing player (upper level). If the score is
-				// lower than (or equal to) alpha, break out of loop discarding any remaining nodes 
-				// and/or subtrees and return the last move.
-				if((Double)(tempMove[0]) <= alpha) {
-					return tempMove;
-				}
-				
-				// Find the move with the minimum score.
-				if((Double)tempMove[0] < (Double)bestMove[0]) {
-					bestMove = tempMove;
-					bestMove[1] = move[0];
-					bestMove[2] = move[1];
-				}
+			// Effective branching factor: the number of children a node would need to have for a
+			// tree of this depth to have this many nodes
+			double branchingFactor = lastDepth > 0 && nodes > 0 ? Math.pow(nodes, 1.0 / lastDepth) : 0;
+			nodes += threatSearch.getNodeCount();
+			if(metrics != null) {
+				metrics.record(lastDepth, nodes, evaluations, cutoffs, firstMoveCutoffs, ttProbes, ttHits, branchingFactor, nanos);
 			}
-		}
-
-		// Return the best move found in this depth
-		return bestMove;
-	}
-	
-	// This function looks for a move that can instantly win the game.
-	private static Object[] searchWinningMove(Board board) {
-		ArrayList<int[]> allPossibleMoves = board.generateMoves();
-		Object[] winningMove = new Object[3];
-		
-		// Iterate for all possible moves
-		for(int[] move : allPossibleMoves) {
-			evaluationCount++;
-			// Create a temporary board that is equivalent to the current board
-			Board dummyBoard = new Board(board);
-			// Play the move on that temporary board without drawing anything
-			dummyBoard.addStoneNoGUI(move[1], move[0], false);
-			
-			// If the white player has a winning score in that temporary board, return the move.
-			if(getScore(dummyBoard,false,false) >= WIN_SCORE) {
-				winningMove[1] = move[0];
-				winningMove[2] = move[1];
-				return winningMove;
+			if(event.shouldCommit()) {
+				event.depth = lastDepth;
+				event.threads = helperSearches.length + 1;
+				event.nodes = nodes;
+				event.evaluations = evaluations;
+				event.nodesPerSecond = nanos > 0 ? (long)(nodes / (nanos / 1e9)) : 0;
+				event.branchingFactor = branchingFactor;
+				event.firstMoveCutoffRate = cutoffs > 0 ? (double)firstMoveCutoffs / cutoffs : 0;
+				event.cacheHitRate = ttProbes > 0 ? (double)ttHits / ttProbes : 0;
+				event.commit();
 			}
 		}
-		return null;
+		mainSearch.resetEvaluationCount();
+		for(SearchThread helper : helperSearches) {
+			helper.resetEvaluationCount();
+		}
 	}
-
+	
 	// This function calculates the score by evaluating the stone positions in horizontal direction
 	public static int evaluateHorizontal(int[][] boardMatrix, boolean forBlack, boolean playersTurn ) {
 
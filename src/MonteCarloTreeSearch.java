@@ -0,0 +1,287 @@
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+
+// Chooses white's moves with Monte Carlo tree search: plays many random games (playouts) from the
+// position and grows a tree of the moves that won the most, choosing the moves to look at with the
+// UCT formula. Stopping it at any time gives a move, and more time gives a better one.
+// Threads search in parallel on their own trees (root parallelism), the move with the most visits
+// over all trees is played. After a move, every tree keeps the subtree of the position the player
+// answered with, so the playouts of the previous search are not lost.
+public class MonteCarloTreeSearch implements GomokuAI {
+
+	// Playouts of the fixed mode per thread, for every ply of the depth
+	public static final int PLAYOUTS_PER_DEPTH = 2000;
+	// Weight of exploring rarely visited moves against playing the winning ones
+	private static final double EXPLORATION = 1.4;
+	// Time is checked every this many playouts
+	private static final int PLAYOUTS_PER_TIME_CHECK = 64;
+
+	// A position of the tree, reached with a move
+	private static class Node {
+		final int move; // y*boardSize+x, -1 for the root
+		final boolean black; // Player who made the move
+		Node[] children;
+		int childCount;
+		// Moves that have no child yet, listed at the first visit
+		int[] untriedMoves;
+		int untriedCount;
+		int visits;
+		double wins; // Wins of the player who made the move, a draw counts as half a win
+		boolean wins5; // The move made a five, the game ended
+
+		Node(int move, boolean black) {
+			this.move = move;
+			this.black = black;
+		}
+		Node findChild(int move) {
+			for(int i=0; i<childCount; i++) {
+				if(children[i].move == move) return children[i];
+			}
+			return null;
+		}
+	}
+
+	// Searches a tree of its own on one thread
+	private class TreeSearch implements Runnable {
+		final Random random;
+		Node root;
+		long rootHash; // Zobrist hash of the board at the root
+		// Nodes from the root to the position of a playout, a path has at most a node per cell
+		Node[] path = new Node[0];
+		RolloutBoard rootBoard, playoutBoard;
+		int playouts; // Playouts of the current search
+		int playoutLimit;
+		long deadline;
+
+		TreeSearch(long seed) {
+			random = new Random(seed);
+		}
+
+		// Makes the position of the board the root, with the subtree of the last search if the
+		// position was in it: the AI played lastMove, then the player answered.
+		void prepare(Board board, int lastMove, int playoutLimit, long deadline) {
+			int boardSize = board.getBoardSize();
+			long hash = board.getZobristHash();
+			Node newRoot = null;
+			Node played = root != null && lastMove >= 0 ? root.findChild(lastMove) : null;
+			if(played != null) {
+				long playedHash = rootHash ^ Zobrist.stoneKey(lastMove % boardSize, lastMove / boardSize, false);
+				for(int i=0; i<played.childCount && newRoot == null; i++) {
+					int reply = played.children[i].move;
+					if((playedHash ^ Zobrist.stoneKey(reply % boardSize, reply / boardSize, true)) == hash) {
+						newRoot = played.children[i];
+					}
+				}
+			}
+			if(newRoot == null) newRoot = new Node(-1, true);
+			root = newRoot;
+			rootHash = hash;
+			if(rootBoard == null || rootBoard.getBoardSize() != boardSize) {
+				rootBoard = new RolloutBoard(boardSize);
+				playoutBoard = new RolloutBoard(boardSize);
+				path = new Node[boardSize * boardSize + 1];
+			}
+			rootBoard.copyFrom(board);
+			this.playouts = 0;
+			this.playoutLimit = playoutLimit;
+			this.deadline = deadline;
+		}
+
+		public void run() {
+			while(playouts < playoutLimit && !stopped) {
+				if(playouts % PLAYOUTS_PER_TIME_CHECK == 0 && System.nanoTime() > deadline && playouts > 0) break;
+				searchOnce();
+				playouts++;
+			}
+		}
+
+		// Selects a path of the tree down to a position that has moves without a child, adds one
+		// of them, plays a random game from there and counts its result on the whole path.
+		private void searchOnce() {
+			playoutBoard.copyFrom(rootBoard);
+			Node node = root;
+			int depth = 0;
+			path[depth++] = node;
+			while(!node.wins5) {
+				if(node.untriedMoves == null) {
+					// Only the move that makes or blocks a five is tried if there is one, like in the playouts
+					int forcedMove = playoutBoard.getForcedMove(!node.black);
+					if(forcedMove >= 0) {
+						node.untriedMoves = new int[] {forcedMove};
+						node.untriedCount = 1;
+					} else {
+						node.untriedMoves = new int[playoutBoard.getCandidateCount()];
+						node.untriedCount = playoutBoard.getCandidates(node.untriedMoves);
+					}
+					node.children = new Node[node.untriedCount];
+				}
+				if(node.untriedCount > 0) {
+					// Expand a random move that has not been tried yet
+					int index = random.nextInt(node.untriedCount);
+					int move = node.untriedMoves[index];
+					node.untriedMoves[index] = node.untriedMoves[--node.untriedCount];
+					Node child = new Node(move, !node.black);
+					child.wins5 = playoutBoard.play(move, child.black);
+					node.children[node.childCount++] = child;
+					node = child;
+					path[depth++] = node;
+					break;
+				}
+				if(node.childCount == 0) break; // No moves left, a draw
+				node = selectChild(node);
+				playoutBoard.play(node.move, node.black);
+				path[depth++] = node;
+			}
+			int winner = node.wins5 ? (node.black ? 2 : 1) : playoutBoard.playout(random, !node.black);
+			for(int i=0; i<depth; i++) {
+				Node visited = path[i];
+				visited.visits++;
+				if(winner == 0) visited.wins += 0.5;
+				else if((winner == 2) == visited.black) visited.wins += 1;
+			}
+		}
+
+		// returns: the child with the highest upper confidence bound (UCT)
+		private Node selectChild(Node node) {
+			Node best = null;
+			double bestValue = Double.NEGATIVE_INFINITY;
+			double logVisits = Math.log(node.visits);
+			for(int i=0; i<node.childCount; i++) {
+				Node child = node.children[i];
+				// A move that wins right away is always chosen
+				if(child.wins5) return child;
+				double value = child.wins / child.visits + EXPLORATION * Math.sqrt(logVisits / child.visits);
+				if(value > bestValue) {
+					bestValue = value;
+					best = child;
+				}
+			}
+			return best;
+		}
+	}
+
+	private Board board;
+	private TreeSearch[] trees;
+	private ExecutorService helperPool;
+	private volatile boolean stopped;
+	// Looks for forced wins before the tree search, like Minimax does
+	private final ThreatSearch threatSearch = new ThreatSearch();
+	private int lastMove = -1; // Move returned by the last search, to find the subtree to keep
+	private long lastPlayoutCount; // Playouts of the last search on all threads
+	private boolean logging = true;
+
+	public MonteCarloTreeSearch(Board board) {
+		this(board, 1);
+	}
+	public MonteCarloTreeSearch(Board board, int threadCount) {
+		this.board = board;
+		setThreadCount(threadCount);
+	}
+
+	public void setBoard(Board board) {
+		this.board = board;
+		lastMove = -1;
+	}
+
+	public void setThreadCount(int threadCount) {
+		if(helperPool != null) helperPool.shutdown();
+		helperPool = null;
+		trees = new TreeSearch[Math.max(1, threadCount)];
+		for(int i=0; i<trees.length; i++) {
+			trees[i] = new TreeSearch(i + 1);
+		}
+		if(trees.length > 1) {
+			helperPool = Executors.newFixedThreadPool(trees.length - 1, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					// Helper threads should not keep the application running
+					Thread thread = new Thread(r, "mcts-helper");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+
+	public void setLogging(boolean logging) {
+		this.logging = logging;
+	}
+
+	public long getLastPlayoutCount() {
+		return lastPlayoutCount;
+	}
+
+	// Plays depth * PLAYOUTS_PER_DEPTH playouts on every thread.
+	public int[] calculateNextMove(int depth) {
+		return calculateNextMove(depth * PLAYOUTS_PER_DEPTH, Long.MAX_VALUE);
+	}
+	public int[] calculateNextMove(long timeBudgetMs) {
+		return calculateNextMove(Integer.MAX_VALUE, System.nanoTime() + timeBudgetMs * 1_000_000);
+	}
+
+	private int[] calculateNextMove(int playoutLimit, long deadline) {
+		board.thinkingStarted();
+		long startTime = System.currentTimeMillis();
+		int boardSize = board.getBoardSize();
+
+		int bestMove = threatSearch.findWinningMove(new Board(board), false);
+		long playouts = 0;
+		long reusedPlayouts = 0; // Playouts of the subtrees kept from the last search
+		if(bestMove < 0) {
+			stopped = false;
+			for(TreeSearch tree : trees) {
+				tree.prepare(board, lastMove, playoutLimit, deadline);
+				reusedPlayouts += tree.root.visits;
+			}
+			Future<?>[] helperResults = new Future<?>[trees.length - 1];
+			for(int i=1; i<trees.length; i++) {
+				helperResults[i - 1] = helperPool.submit(trees[i]);
+			}
+			trees[0].run();
+			// Helpers of the fixed mode run their playouts to the end, in the time mode they stop with the main thread
+			if(deadline != Long.MAX_VALUE) stopped = true;
+			for(Future<?> helperResult : helperResults) {
+				try {
+					helperResult.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (ExecutionException e) {
+					throw new RuntimeException(e.getCause());
+				}
+			}
+			bestMove = selectMostVisited(boardSize);
+			for(TreeSearch tree : trees) {
+				playouts += tree.playouts;
+			}
+		}
+		lastMove = bestMove;
+		lastPlayoutCount = playouts;
+		if(logging) System.out.println("Playouts: " + playouts + " Reused: " + reusedPlayouts + " Threads: " + trees.length + " Calculation time: " + (System.currentTimeMillis() - startTime) + " ms");
+		board.thinkingFinished();
+		if(bestMove < 0) return null;
+		return new int[] {bestMove / boardSize, bestMove % boardSize};
+	}
+
+	// Adds up the visits of the root moves over all trees.
+	// returns: the move with the most visits, or -1 if there is no move
+	private int selectMostVisited(int boardSize) {
+		int[] visits = new int[boardSize * boardSize];
+		int bestMove = -1;
+		for(TreeSearch tree : trees) {
+			Node root = tree.root;
+			for(int i=0; i<root.childCount; i++) {
+				Node child = root.children[i];
+				// A move that wins right away is played, whatever the counts
+				visits[child.move] += child.wins5 ? Integer.MAX_VALUE / (2 * trees.length) : child.visits;
+			}
+		}
+		for(int move=0; move<visits.length; move++) {
+			if(visits[move] > 0 && (bestMove < 0 || visits[move] > visits[bestMove])) bestMove = move;
+		}
+		return bestMove;
+	}
+}
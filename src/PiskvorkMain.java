@@ -0,0 +1,237 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+
+
+// Console entry point that plays through the Gomocup (Piskvork) protocol on stdin/stdout,
+// so that the AI can be run by tournament managers and match runners without the GUI.
+// Supported commands: START, RESTART, BEGIN, TURN, BOARD, TAKEBACK, INFO, ABOUT and END.
+// The AI's stones are white on the board, so Minimax searches the AI's moves as usual.
+public class PiskvorkMain {
+
+	// Time kept back from every move for reading the command and writing the answer
+	private static final long SAFETY_MARGIN_MS = 50;
+	private static final long MIN_TIME_BUDGET_MS = 10;
+	// Share of the remaining match time a single move can use
+	private static final int MATCH_TIME_DIVISOR = 20;
+
+	private final BufferedReader in;
+	private final Writer out;
+	private Board board;
+	private Minimax ai;
+	private int ttSizeMB = Minimax.DEFAULT_TT_SIZE_MB;
+
+	// Limits sent with INFO, in milliseconds. A turn limit of 0 means playing as fast as possible,
+	// a match limit of 0 means no limit. 30 seconds per turn until the manager sends a limit.
+	private long timeoutTurn = 30_000;
+	private long timeoutMatch = 0;
+	private long timeLeft = 0;
+
+	public PiskvorkMain(BufferedReader in, Writer out) {
+		this.in = in;
+		this.out = out;
+	}
+
+	public static void main(String[] args) throws IOException {
+		// Only the protocol may be written to stdout, the log of the search goes to stderr.
+		PrintStream stdout = System.out;
+		System.setOut(System.err);
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+		Writer out = new BufferedWriter(new OutputStreamWriter(stdout));
+		new PiskvorkMain(in, out).run();
+	}
+
+	// Answers the commands until END or the end of the input.
+	public void run() throws IOException {
+		String line;
+		while((line = in.readLine()) != null) {
+			line = line.trim();
+			if(line.isEmpty()) continue;
+			int space = line.indexOf(' ');
+			String command = (space < 0 ? line : line.substring(0, space)).toUpperCase();
+			String argument = space < 0 ? "" : line.substring(space + 1).trim();
+
+			switch(command) {
+			case "START":
+				start(argument);
+				break;
+			case "RESTART":
+				if(board == null) send("ERROR no game was started");
+				else start(Integer.toString(board.getBoardSize()));
+				break;
+			case "BEGIN":
+				if(checkStarted()) playOwnMove();
+				break;
+			case "TURN":
+				if(checkStarted() && placeStone(argument, true)) playOwnMove();
+				break;
+			case "BOARD":
+				if(readBoard()) playOwnMove();
+				break;
+			case "TAKEBACK":
+				if(checkStarted()) takeBack(argument);
+				break;
+			case "INFO":
+				info(argument);
+				break;
+			case "ABOUT":
+				send("name=\"gomoku-ai-minimax\", version=\"1.0\"");
+				break;
+			case "END":
+				return;
+			default:
+				send("UNKNOWN command " + command);
+			}
+		}
+	}
+
+	private void start(String argument) throws IOException {
+		int boardSize;
+		try {
+			boardSize = Integer.parseInt(argument);
+		} catch (NumberFormatException e) {
+			send("ERROR invalid board size " + argument);
+			return;
+		}
+		if(boardSize < 5 || boardSize > Board.MAX_BOARD_SIZE) {
+			send("ERROR unsupported board size " + boardSize);
+			return;
+		}
+		board = new Board(boardSize);
+		if(ai == null) ai = new Minimax(board, ttSizeMB);
+		else ai.setBoard(board);
+		send("OK");
+	}
+
+	// Reads the stones of the BOARD command up to DONE, into a new board.
+	// returns: false if the input ended or had an invalid line
+	private boolean readBoard() throws IOException {
+		if(!checkStarted()) return false;
+		board = new Board(board.getBoardSize());
+		ai.setBoard(board);
+		boolean valid = true;
+		String line;
+		while((line = in.readLine()) != null) {
+			line = line.trim();
+			if(line.equalsIgnoreCase("DONE")) return valid;
+			// x,y,field: 1 -> own stone, 2 -> opponent's stone, 3 -> continuous game mark (not a stone)
+			String[] parts = line.split(",");
+			if(parts.length != 3) {
+				valid = false;
+				continue;
+			}
+			String field = parts[2].trim();
+			if(field.equals("1") || field.equals("2")) {
+				valid &= placeStone(parts[0] + "," + parts[1], field.equals("2"));
+			}
+		}
+		return false;
+	}
+
+	// Places a stone given as "x,y". Opponent's stones are black, the AI's stones are white.
+	// returns: false if the cell is invalid, after sending the error
+	private boolean placeStone(String cell, boolean opponent) throws IOException {
+		int[] position = parseCell(cell);
+		if(position == null || !board.addStone(position[0], position[1], opponent)) {
+			send("ERROR invalid move " + cell);
+			return false;
+		}
+		return true;
+	}
+	private void takeBack(String cell) throws IOException {
+		int[] position = parseCell(cell);
+		if(position == null || board.getCell(position[0], position[1]) == 0) {
+			send("ERROR invalid move " + cell);
+			return;
+		}
+		board.removeStoneNoGUI(position[0], position[1]);
+		send("OK");
+	}
+
+	// Searches the AI's move within the time limits, plays it and sends it.
+	private void playOwnMove() throws IOException {
+		int boardSize = board.getBoardSize();
+		int[] move = board.generateMoves().isEmpty() ? null : ai.calculateNextMove(getTimeBudget());
+		if(move == null) {
+			// Empty board: start in the middle
+			move = new int[] {boardSize / 2, boardSize / 2};
+			if(board.getCell(move[1], move[0]) != 0) {
+				send("ERROR no move left");
+				return;
+			}
+		}
+		board.addStone(move[1], move[0], false);
+		send(move[1] + "," + move[0]);
+	}
+
+	// Time the next move can take, in milliseconds
+	private long getTimeBudget() {
+		// The first iteration of the search always finishes, so the shallowest search is played
+		if(timeoutTurn == 0) return MIN_TIME_BUDGET_MS;
+		long limit = timeoutTurn;
+		if(timeoutMatch > 0 && timeLeft > 0) {
+			limit = Math.min(limit, timeLeft / MATCH_TIME_DIVISOR);
+		}
+		return Math.max(MIN_TIME_BUDGET_MS, limit - Math.max(SAFETY_MARGIN_MS, limit / 10));
+	}
+
+	private void info(String argument) {
+		int space = argument.indexOf(' ');
+		if(space < 0) return;
+		String key = argument.substring(0, space).toLowerCase();
+		long value;
+		try {
+			value = Long.parseLong(argument.substring(space + 1).trim());
+		} catch (NumberFormatException e) {
+			// Other keys like rule and folder are not numbers and are not used
+			return;
+		}
+		switch(key) {
+		case "timeout_turn":
+			timeoutTurn = value;
+			break;
+		case "timeout_match":
+			timeoutMatch = value;
+			break;
+		case "time_left":
+			timeLeft = value;
+			break;
+		case "max_memory":
+			// Use at most a quarter of the limit for the transposition table, the rest is left for the JVM
+			int sizeMB = value > 0 ? (int)Math.max(1, Math.min(Minimax.DEFAULT_TT_SIZE_MB, (value / 4) >> 20)) : Minimax.DEFAULT_TT_SIZE_MB;
+			if(sizeMB != ttSizeMB) {
+				ttSizeMB = sizeMB;
+				if(ai != null) ai.resizeTranspositionTable(ttSizeMB);
+			}
+			break;
+		}
+	}
+
+	private boolean checkStarted() throws IOException {
+		if(board == null) send("ERROR no game was started");
+		return board != null;
+	}
+	// returns: {x, y} of a cell given as "x,y", or null if it is not on the board
+	private int[] parseCell(String cell) {
+		String[] parts = cell.split(",");
+		if(parts.length != 2) return null;
+		try {
+			int posX = Integer.parseInt(parts[0].trim());
+			int posY = Integer.parseInt(parts[1].trim());
+			if(posX < 0 || posY < 0 || posX >= board.getBoardSize() || posY >= board.getBoardSize()) return null;
+			return new int[] {posX, posY};
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+	// Every answer is flushed at once, the manager waits for it
+	private void send(String message) throws IOException {
+		out.write(message);
+		out.write('\n');
+		out.flush();
+	}
+}
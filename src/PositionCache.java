@@ -0,0 +1,124 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+// Keeps search results in a file, so that they survive restarts of the program.
+// The file is memory-mapped: nothing is deserialized at startup, entries are read from the file
+// when they are looked up, and every stored entry is in the file as soon as it is written,
+// even if the program stops before the cache is closed.
+//
+// File format (big endian):
+//   header: magic number, format version, entry count (a power of two), unused
+//   entries: 3 longs each, in the same layout as the entries of TranspositionTable:
+//            hash ^ score bits ^ packed info, score bits, packed info
+// A partly written entry does not pass the hash check and is treated as missing.
+// Positions are stored in their canonical orientation (see Symmetry), so a position shares its
+// entry with its rotations and reflections. The best move is turned back to the board it is read for.
+public class PositionCache {
+
+	public static final int DEFAULT_SIZE_MB = 16;
+
+	private static final int MAGIC = 0x474D4B43; // "GMKC"
+	private static final int VERSION = 2; // 2: canonical hashes
+	private static final int HEADER_BYTES = 16;
+	private static final int ENTRY_BYTES = 24;
+	// Same as the used flag of a TranspositionTable entry
+	private static final long USED = 1L << 42;
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer buffer;
+	private final int entryMask;
+
+	// Opens the cache file, or creates it with the given size if it does not exist.
+	// A file that is not a cache of this version is replaced with an empty cache.
+	public PositionCache(String path, int sizeInMB) throws IOException {
+		file = new RandomAccessFile(path, "rw");
+		int entryCount = readEntryCount();
+		boolean created = entryCount == 0;
+		if(created) {
+			long entries = Math.max(1, ((long)sizeInMB << 20) / ENTRY_BYTES);
+			entryCount = (int)Long.highestOneBit(Math.min(entries, (Integer.MAX_VALUE - HEADER_BYTES) / ENTRY_BYTES));
+			file.setLength(0);
+			file.setLength(HEADER_BYTES + (long)entryCount * ENTRY_BYTES);
+		}
+		buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long)entryCount * ENTRY_BYTES);
+		entryMask = entryCount - 1;
+		if(created) {
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(4, VERSION);
+			buffer.putInt(8, entryCount);
+		}
+	}
+
+	// Looks for the position of the board, or one of its symmetric positions, in the cache.
+	// If found, entry is filled like TranspositionTable.probe does: [0] -> score bits, [1] -> packed info
+	public boolean probe(Board board, long[] entry) {
+		long[] hashes = new long[Symmetry.COUNT];
+		Symmetry.computeHashes(board, hashes);
+		int symmetry = Symmetry.canonicalSymmetry(hashes);
+		if(!probe(hashes[symmetry], entry)) return false;
+		int move = TranspositionTable.moveOf(entry);
+		if(move >= 0) TranspositionTable.setMove(entry, Symmetry.inverse(symmetry, move, board.getBoardSize()));
+		return true;
+	}
+
+	// Stores an entry read from a TranspositionTable for the position of the board. The result of
+	// a deeper search of another position in the same place is kept.
+	public void store(Board board, long[] entry) {
+		long[] hashes = new long[Symmetry.COUNT];
+		Symmetry.computeHashes(board, hashes);
+		int symmetry = Symmetry.canonicalSymmetry(hashes);
+		long[] canonicalEntry = entry.clone();
+		int move = TranspositionTable.moveOf(entry);
+		if(move >= 0) TranspositionTable.setMove(canonicalEntry, Symmetry.transform(symmetry, move, board.getBoardSize()));
+		store(hashes[symmetry], canonicalEntry);
+	}
+
+	private boolean probe(long hash, long[] entry) {
+		int offset = offsetOf(hash);
+		long score = buffer.getLong(offset + 8);
+		long info = buffer.getLong(offset + 16);
+		if((buffer.getLong(offset) ^ score ^ info) != hash || (info & USED) == 0) return false;
+		entry[0] = score;
+		entry[1] = info;
+		return true;
+	}
+
+	private void store(long hash, long[] entry) {
+		int offset = offsetOf(hash);
+		long oldScore = buffer.getLong(offset + 8);
+		long oldInfo = buffer.getLong(offset + 16);
+		boolean sameHash = (buffer.getLong(offset) ^ oldScore ^ oldInfo) == hash;
+		if((oldInfo & USED) != 0 && !sameHash &&
+		   TranspositionTable.depthOf(oldInfo) > TranspositionTable.depthOf(entry[1])) return;
+		buffer.putLong(offset + 8, entry[0]);
+		buffer.putLong(offset + 16, entry[1]);
+		buffer.putLong(offset, hash ^ entry[0] ^ entry[1]);
+	}
+
+	// Writes the stored entries to the disk.
+	public void flush() {
+		buffer.force();
+	}
+	public void close() throws IOException {
+		flush();
+		file.close();
+	}
+
+	// returns: the entry count in the header of the file, or 0 if the file is not a valid cache
+	private int readEntryCount() throws IOException {
+		if(file.length() < HEADER_BYTES) return 0;
+		file.seek(0);
+		int magic = file.readInt();
+		int version = file.readInt();
+		int entryCount = file.readInt();
+		if(magic != MAGIC || version != VERSION || entryCount <= 0 || Integer.bitCount(entryCount) != 1 ||
+		   file.length() != HEADER_BYTES + (long)entryCount * ENTRY_BYTES) return 0;
+		return entryCount;
+	}
+	private int offsetOf(long hash) {
+		return HEADER_BYTES + ((int)hash & entryMask) * ENTRY_BYTES;
+	}
+}
@@ -0,0 +1,184 @@
+import java.util.Arrays;
+import java.util.Random;
+
+
+// Light board for the random games (playouts) of MonteCarloTreeSearch. Placing a stone only
+// updates a cell, the list of candidate moves and the cells that complete a five, nothing is
+// evaluated. A copy of the root position is made for every playout, so copying is cheap too.
+// Cells are indexed as y*boardSize+x.
+public class RolloutBoard {
+
+	private static final int[][] DIRECTIONS = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
+	// Number of cells that complete a five kept for every player, older ones are dropped
+	private static final int MAX_FIVE_CELLS = 16;
+
+	private final int boardSize;
+	private final byte[] cells; // 0: Empty 1: White 2: Black
+	// Candidate moves are the empty cells next to a stone, like the moves of Board.generateMoves.
+	// candidateIndexes keeps the position of every cell in the list, -1 if it is not a candidate,
+	// so that a cell is removed from the list without searching it.
+	private final int[] candidates;
+	private final int[] candidateIndexes;
+	private int candidateCount;
+	// Cells that complete a five for each player ([0] -> white, [1] -> black), found around the
+	// stones of the player. Some of them may have been filled since.
+	private final int[][] fiveCells = new int[2][MAX_FIVE_CELLS];
+	private final int[] fiveCellCounts = new int[2];
+	// Cells of a line from 4 before to 4 after a stone, -1 outside of the board
+	private final int[] lineCells = new int[9];
+
+	public RolloutBoard(int boardSize) {
+		this.boardSize = boardSize;
+		cells = new byte[boardSize * boardSize];
+		candidates = new int[boardSize * boardSize];
+		candidateIndexes = new int[boardSize * boardSize];
+		Arrays.fill(candidateIndexes, -1);
+	}
+
+	// Copies the stones of the board.
+	public void copyFrom(Board board) {
+		Arrays.fill(cells, (byte)0);
+		Arrays.fill(candidateIndexes, -1);
+		candidateCount = 0;
+		fiveCellCounts[0] = fiveCellCounts[1] = 0;
+		for(int cell=0; cell<cells.length; cell++) {
+			cells[cell] = (byte)board.getCell(cell % boardSize, cell / boardSize);
+		}
+		for(int cell=0; cell<cells.length; cell++) {
+			if(cells[cell] != 0) {
+				addNeighbors(cell);
+				collectFiveCells(cell, cells[cell] == 2);
+			}
+		}
+	}
+	public void copyFrom(RolloutBoard board) {
+		System.arraycopy(board.cells, 0, cells, 0, cells.length);
+		System.arraycopy(board.candidates, 0, candidates, 0, board.candidateCount);
+		System.arraycopy(board.candidateIndexes, 0, candidateIndexes, 0, candidateIndexes.length);
+		candidateCount = board.candidateCount;
+		for(int color=0; color<2; color++) {
+			System.arraycopy(board.fiveCells[color], 0, fiveCells[color], 0, board.fiveCellCounts[color]);
+			fiveCellCounts[color] = board.fiveCellCounts[color];
+		}
+	}
+
+	public int getBoardSize() {
+		return boardSize;
+	}
+	public int getCandidateCount() {
+		return candidateCount;
+	}
+	// Writes the candidate moves into the given buffer. returns: number of moves
+	public int getCandidates(int[] moves) {
+		System.arraycopy(candidates, 0, moves, 0, candidateCount);
+		return candidateCount;
+	}
+
+	// Places a stone to the empty cell.
+	// returns: true if the stone makes 5 or more consecutive stones
+	public boolean play(int cell, boolean black) {
+		cells[cell] = (byte)(black ? 2 : 1);
+		removeCandidate(cell);
+		addNeighbors(cell);
+		return collectFiveCells(cell, black);
+	}
+
+	// returns: the cell that completes a five for the player, or else the cell that blocks a five
+	//          of the other player, or -1 if the player can move freely
+	public int getForcedMove(boolean black) {
+		int move = getFiveCell(black);
+		return move >= 0 ? move : getFiveCell(!black);
+	}
+
+	// Plays the game to its end: every player wins with a five if it can, blocks the five of the
+	// other player if it has to, and plays a random candidate move otherwise.
+	// returns: 0 -> draw, 1 -> white wins, 2 -> black wins
+	public int playout(Random random, boolean blackToMove) {
+		boolean black = blackToMove;
+		while(candidateCount > 0) {
+			int move = getForcedMove(black);
+			if(move < 0) move = candidates[random.nextInt(candidateCount)];
+			if(play(move, black)) return black ? 2 : 1;
+			black = !black;
+		}
+		return 0;
+	}
+
+	// returns: an empty cell that completes a five for the player, or -1
+	private int getFiveCell(boolean black) {
+		int[] own = fiveCells[black ? 1 : 0];
+		int count = fiveCellCounts[black ? 1 : 0];
+		// Drop the cells that have been filled
+		while(count > 0 && cells[own[count - 1]] != 0) count--;
+		fiveCellCounts[black ? 1 : 0] = count;
+		return count > 0 ? own[count - 1] : -1;
+	}
+
+	// Looks at the 4 lines through the stone for five cell windows with 4 stones of its player and
+	// an empty cell, and keeps the empty cells.
+	// returns: true if the stone is part of 5 or more consecutive stones
+	private boolean collectFiveCells(int cell, boolean black) {
+		int posX = cell % boardSize;
+		int posY = cell / boardSize;
+		byte own = (byte)(black ? 2 : 1);
+		boolean five = false;
+		for(int[] direction : DIRECTIONS) {
+			int[] line = lineCells;
+			for(int i=-4; i<=4; i++) {
+				int x = posX + i * direction[0];
+				int y = posY + i * direction[1];
+				line[i + 4] = x < 0 || y < 0 || x >= boardSize || y >= boardSize ? -1 : y * boardSize + x;
+			}
+			for(int start=0; start<5; start++) {
+				int stones = 0, empty = -1, emptyCount = 0;
+				for(int i=start; i<start+5; i++) {
+					if(line[i] < 0) {
+						stones = -1;
+						break;
+					}
+					if(cells[line[i]] == own) stones++;
+					else if(cells[line[i]] == 0) {
+						empty = line[i];
+						emptyCount++;
+					}
+				}
+				if(stones == 5) five = true;
+				else if(stones == 4 && emptyCount == 1) addFiveCell(empty, black);
+			}
+		}
+		return five;
+	}
+	private void addFiveCell(int cell, boolean black) {
+		int[] own = fiveCells[black ? 1 : 0];
+		int count = fiveCellCounts[black ? 1 : 0];
+		if(count == MAX_FIVE_CELLS) {
+			System.arraycopy(own, 1, own, 0, count - 1);
+			count--;
+		}
+		own[count] = cell;
+		fiveCellCounts[black ? 1 : 0] = count + 1;
+	}
+
+	private void addNeighbors(int cell) {
+		int posX = cell % boardSize;
+		int posY = cell / boardSize;
+		for(int y=Math.max(0, posY - 1); y<=Math.min(boardSize - 1, posY + 1); y++) {
+			for(int x=Math.max(0, posX - 1); x<=Math.min(boardSize - 1, posX + 1); x++) {
+				int neighbor = y * boardSize + x;
+				if(cells[neighbor] == 0 && candidateIndexes[neighbor] < 0) {
+					candidateIndexes[neighbor] = candidateCount;
+					candidates[candidateCount++] = neighbor;
+				}
+			}
+		}
+	}
+	// Removes the cell from the candidates by moving the last candidate into its place.
+	private void removeCandidate(int cell) {
+		int index = candidateIndexes[cell];
+		if(index < 0) return;
+		int last = candidates[--candidateCount];
+		candidates[index] = last;
+		candidateIndexes[last] = index;
+		candidateIndexes[cell] = -1;
+	}
+}
@@ -0,0 +1,40 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+// Flight recorder event of a move search (Minimax.calculateNextMove), its duration is the wall time.
+// Only recorded while a recording is running, e.g. with
+//   java -XX:StartFlightRecording:filename=search.jfr ...
+// Otherwise creating it and checking shouldCommit is all it costs.
+@Name("gomoku.Search")
+@Label("Move Search")
+@Category("Gomoku")
+@Description("Statistics of a minimax move search")
+@StackTrace(false)
+public class SearchEvent extends Event {
+
+	@Label("Depth")
+	public int depth;
+	@Label("Threads")
+	public int threads;
+	@Label("Nodes")
+	@Description("Minimax and threat search nodes of all threads")
+	public long nodes;
+	@Label("Leaf Evaluations")
+	public long evaluations;
+	@Label("Nodes per Second")
+	public long nodesPerSecond;
+	@Label("Effective Branching Factor")
+	@Description("Minimax nodes to the power of 1/depth")
+	public double branchingFactor;
+	@Label("First Move Cutoff Rate")
+	@Description("Share of the cutoffs caused by the first move searched")
+	public double firstMoveCutoffRate;
+	@Label("Cache Hit Rate")
+	@Description("Share of the transposition table probes that found the position")
+	public double cacheHitRate;
+}
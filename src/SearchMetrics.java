@@ -0,0 +1,113 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+
+// Aggregates the statistics of the searches of all Minimax instances, and shows them over JMX
+// (e.g. in JConsole) as gomoku:type=SearchMetrics.
+// Searches only record their statistics after register is called, until then this costs nothing.
+public class SearchMetrics implements SearchMetricsMBean {
+
+	public static final String OBJECT_NAME = "gomoku:type=SearchMetrics";
+
+	private static volatile SearchMetrics registered;
+
+	private final LongAdder searchCount = new LongAdder();
+	private final LongAdder nodeCount = new LongAdder();
+	private final LongAdder evaluationCount = new LongAdder();
+	private final LongAdder cutoffCount = new LongAdder();
+	private final LongAdder firstMoveCutoffCount = new LongAdder();
+	private final LongAdder ttProbeCount = new LongAdder();
+	private final LongAdder ttHitCount = new LongAdder();
+	private final LongAdder depthSum = new LongAdder();
+	private final LongAdder searchNanos = new LongAdder();
+	private final LongAccumulator maxSearchNanos = new LongAccumulator(Math::max, 0);
+	private final DoubleAdder branchingFactorSum = new DoubleAdder();
+
+	// Starts recording the statistics and registers the MBean with the platform MBean server.
+	// returns: the registered instance, the same one for every call
+	public static synchronized SearchMetrics register() {
+		if(registered == null) {
+			SearchMetrics metrics = new SearchMetrics();
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+			} catch (JMException e) {
+				throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+			}
+			registered = metrics;
+		}
+		return registered;
+	}
+	// returns: the registered instance, or null if the statistics are not recorded
+	public static SearchMetrics getRegistered() {
+		return registered;
+	}
+
+	// Adds the statistics of a finished search. Can be called from any thread.
+	public void record(int depth, long nodes, long evaluations, long cutoffs, long firstMoveCutoffs,
+			long ttProbes, long ttHits, double branchingFactor, long nanos) {
+		searchCount.increment();
+		nodeCount.add(nodes);
+		evaluationCount.add(evaluations);
+		cutoffCount.add(cutoffs);
+		firstMoveCutoffCount.add(firstMoveCutoffs);
+		ttProbeCount.add(ttProbes);
+		ttHitCount.add(ttHits);
+		depthSum.add(depth);
+		branchingFactorSum.add(branchingFactor);
+		searchNanos.add(nanos);
+		maxSearchNanos.accumulate(nanos);
+	}
+
+	public long getSearchCount() {
+		return searchCount.sum();
+	}
+	public long getNodeCount() {
+		return nodeCount.sum();
+	}
+	public long getEvaluationCount() {
+		return evaluationCount.sum();
+	}
+	public double getNodesPerSecond() {
+		return ratio(nodeCount.sum(), searchNanos.sum() / 1e9);
+	}
+	public double getAverageBranchingFactor() {
+		return ratio(branchingFactorSum.sum(), searchCount.sum());
+	}
+	public double getFirstMoveCutoffRate() {
+		return ratio(firstMoveCutoffCount.sum(), cutoffCount.sum());
+	}
+	public double getCacheHitRate() {
+		return ratio(ttHitCount.sum(), ttProbeCount.sum());
+	}
+	public double getAverageDepth() {
+		return ratio(depthSum.sum(), searchCount.sum());
+	}
+	public double getAverageSearchTimeMs() {
+		return ratio(searchNanos.sum() / 1e6, searchCount.sum());
+	}
+	public long getMaxSearchTimeMs() {
+		return maxSearchNanos.get() / 1_000_000;
+	}
+	public void reset() {
+		searchCount.reset();
+		nodeCount.reset();
+		evaluationCount.reset();
+		cutoffCount.reset();
+		firstMoveCutoffCount.reset();
+		ttProbeCount.reset();
+		ttHitCount.reset();
+		depthSum.reset();
+		branchingFactorSum.reset();
+		searchNanos.reset();
+		maxSearchNanos.reset();
+	}
+
+	private static double ratio(double value, double total) {
+		return total == 0 ? 0 : value / total;
+	}
+}
@@ -0,0 +1,16 @@
+// Search statistics aggregated over all searches since the start or the last reset, see SearchMetrics.
+public interface SearchMetricsMBean {
+
+	long getSearchCount();
+	long getNodeCount();
+	long getEvaluationCount();
+	double getNodesPerSecond();
+	double getAverageBranchingFactor();
+	double getFirstMoveCutoffRate();
+	double getCacheHitRate();
+	double getAverageDepth();
+	double getAverageSearchTimeMs();
+	long getMaxSearchTimeMs();
+	// Clears the statistics
+	void reset();
+}
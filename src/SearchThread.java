@@ -0,0 +1,514 @@
+import java.util.Arrays;
+
+
+// Searches the minimax tree on its own copy of the board.
+// Every thread of a parallel search has its own SearchThread, they only share the transposition table.
+public class SearchThread {
+
+	// Transposition table keeps the scores of the positions searched before, shared by all threads
+	private final TranspositionTable tt;
+	// Reused to read transposition table entries without allocating
+	private final long[] ttEntry = new long[2];
+	// Search state is allocated once per depth, so that searching a node does not allocate:
+	// move lists of the nodes being searched and the best move found in each of them.
+	private int[][] moveBuffers = new int[0][];
+	private int[][] moveOrderScores = new int[0][];
+	private int[] bestMoves = new int[0];
+	// Move ordering heuristics, moves that caused cutoffs before are searched first.
+	// Killer moves: the last 2 moves that caused a cutoff at a ply (distance from the root).
+	// History: for each player and cell, how much searching caused cutoffs there, weighted by depth.
+	private int[][] killerMoves = new int[0][];
+	private int[][] history = new int[2][0];
+	// Time budgeted searches are aborted when the deadline (System.nanoTime) passes or when
+	// another thread requests a stop. Both are only checked every 1024 nodes.
+	private long deadline = Long.MAX_VALUE;
+	private volatile boolean stopRequested;
+	private boolean searchAborted;
+	private int nodesSinceTimeCheck;
+	// Root move to search first, the best move of the previous iteration
+	private int rootDepth;
+	private int rootFirstMove = -1;
+	// Helper threads of a parallel search start searching the root moves from a different
+	// place in the list, so that they do not all work on the same subtree.
+	private int rootRotation;
+	// Half width of the aspiration window, as a factor of the score. Iterations with an odd and an
+	// even depth evaluate the leaves with different players to move and their scores differ a lot,
+	// so the window is set around the score of the iteration two plies shallower.
+	private static final double ASPIRATION_FACTOR = 8.0;
+	// Root moves of the current iteration in the order they were searched. A search repeated with a
+	// wider window keeps the order, so that it chooses the same move among moves with equal scores.
+	private int rootMoveCount;
+	// Which moves are searched and how deep, every move to the full depth by default
+	private SelectiveSearch selectiveSearch = SelectiveSearch.NONE;
+	// Number of evaluated positions, counted per thread for benchmarking purposes
+	private long evaluationCount;
+	private int depthReached;
+	// Statistics of the search, counted per thread and reset with the evaluation count
+	private long nodeCount; // Searched nodes, including the evaluated leaves
+	private long cutoffCount; // Nodes that were cut off by alpha-beta
+	private long firstMoveCutoffCount; // Cutoffs caused by the first move searched, shows how good the move ordering is
+	private long ttProbeCount;
+	private long ttHitCount;
+
+	public SearchThread(TranspositionTable tt) {
+		this.tt = tt;
+	}
+
+	// Searches the minimax tree with increasing depths (iterative deepening), starting every
+	// iteration with the best move of the previous one, until maxDepth or the deadline.
+	// The first iteration is never aborted, so that there is always a move to return.
+	// returns: best move of the deepest finished iteration (y*boardSize+x), or -1 if there is no move
+	public int search(Board dummyBoard, int startDepth, int maxDepth, long deadline) {
+		int boardSize = dummyBoard.getBoardSize();
+		ensureSearchBuffers(maxDepth, dummyBoard.getMoveBufferSize(maxDepth), boardSize * boardSize);
+		resetMoveOrdering();
+
+		int bestMove = -1;
+		depthReached = 0;
+		this.deadline = Long.MAX_VALUE;
+		searchAborted = false;
+		nodesSinceTimeCheck = 0;
+		rootFirstMove = -1;
+		long iterationStart = System.nanoTime();
+		// Scores of the last two iterations
+		double lastScore = 0, secondLastScore = 0;
+		for(int depth=startDepth; depth<=maxDepth; depth++) {
+			rootDepth = depth;
+			double score = searchRoot(depth, dummyBoard, depth >= startDepth + 2 ? secondLastScore : 0);
+			// The aborted iteration did not look at all moves, its result can not be trusted.
+			if(searchAborted) break;
+			secondLastScore = lastScore;
+			lastScore = score;
+			bestMove = bestMoves[depth];
+			depthReached = depth;
+			if(bestMove < 0) break;
+			rootFirstMove = bestMove;
+			this.deadline = deadline;
+
+			// The next iteration takes several times longer than this one, do not start it
+			// if it will most likely be aborted.
+			long now = System.nanoTime();
+			if(deadline != Long.MAX_VALUE && now + 2 * (now - iterationStart) > deadline) break;
+			iterationStart = now;
+		}
+		this.deadline = Long.MAX_VALUE;
+		return bestMove;
+	}
+
+	// Searches the root with an aspiration window around the score of an earlier iteration, which
+	// is usually close, so that more moves are cut off. Scores are ratios of the scores of the
+	// players, so the window is a factor on both sides. If the score falls out of the window, the
+	// search is repeated with that side opened, and the move is the same as with the full window.
+	// previousScore: score of the iteration two plies shallower, 0 for the full window
+	// returns: score of the root
+	private double searchRoot(int depth, Board dummyBoard, double previousScore) {
+		double alpha = -1.0;
+		double beta = Minimax.getWinScore();
+		if(previousScore > 0 && previousScore < beta) {
+			alpha = previousScore / ASPIRATION_FACTOR;
+			beta = Math.min(previousScore * ASPIRATION_FACTOR, beta);
+		}
+		rootMoveCount = 0;
+		while(true) {
+			double score = minimaxSearchAB(depth, 0, dummyBoard, true, alpha, beta);
+			if(searchAborted) return 0;
+			if(score <= alpha && alpha > -1.0) alpha = -1.0;
+			else if(score >= beta && beta < Minimax.getWinScore()) beta = Minimax.getWinScore();
+			else return score;
+		}
+	}
+
+	// Sets the moves that are searched shallower or not at all, see SelectiveSearch.
+	// Must not be called during a search.
+	public void setSelectiveSearch(SelectiveSearch selectiveSearch) {
+		this.selectiveSearch = selectiveSearch;
+	}
+
+	// Makes the running search stop at its next time check. Can be called from any thread.
+	public void stop() {
+		stopRequested = true;
+	}
+	// Clears a previous stop request, must be called before the thread starts a new search.
+	public void prepare(int rootRotation) {
+		this.rootRotation = rootRotation;
+		stopRequested = false;
+	}
+	public long getEvaluationCount() {
+		return evaluationCount;
+	}
+	public void resetEvaluationCount() {
+		evaluationCount = 0;
+		nodeCount = 0;
+		cutoffCount = 0;
+		firstMoveCutoffCount = 0;
+		ttProbeCount = 0;
+		ttHitCount = 0;
+	}
+	public long getNodeCount() {
+		return nodeCount;
+	}
+	public long getCutoffCount() {
+		return cutoffCount;
+	}
+	public long getFirstMoveCutoffCount() {
+		return firstMoveCutoffCount;
+	}
+	public long getTTProbeCount() {
+		return ttProbeCount;
+	}
+	public long getTTHitCount() {
+		return ttHitCount;
+	}
+	public int getDepthReached() {
+		return depthReached;
+	}
+
+	// Allocates the per-depth state of the search once, so that searching does not allocate.
+	private void ensureSearchBuffers(int depth, int moveCount, int cellCount) {
+		if(moveBuffers.length <= depth || moveBuffers[0].length < moveCount) {
+			moveBuffers = new int[depth + 1][moveCount];
+			moveOrderScores = new int[depth + 1][moveCount];
+			bestMoves = new int[depth + 1];
+			killerMoves = new int[depth + 1][2];
+		}
+		if(history[0].length != cellCount) {
+			history = new int[2][cellCount];
+		}
+	}
+	// Forgets the killer moves and the history of the previous searches.
+	public void clearMoveOrdering() {
+		for(int[] killers : killerMoves) {
+			killers[0] = killers[1] = -1;
+		}
+		for(int[] colorHistory : history) {
+			Arrays.fill(colorHistory, 0);
+		}
+	}
+	// Prepares the move ordering heuristics for a new search.
+	private void resetMoveOrdering() {
+		for(int[] killers : killerMoves) {
+			killers[0] = killers[1] = -1;
+		}
+		// Keep what was learned in the previous search, but let the new results count more.
+		for(int[] colorHistory : history) {
+			for(int i=0; i<colorHistory.length; i++) colorHistory[i] >>= 1;
+		}
+	}
+	
+	// Sorts the moves of a node: the hash move first, then the killer moves of the ply,
+	// then the rest by their history score. Moves with the same score keep their order.
+	// A selective search sorts the rest by their threat rank first, so that the forcing moves
+	// are not reduced or pruned.
+	private void orderMoves(Board dummyBoard, int[] moves, int moveCount, int depth, int hashMove, int ply, boolean black) {
+		int[] scores = moveOrderScores[depth];
+		int[] killers = killerMoves[ply];
+		int[] colorHistory = history[black ? 1 : 0];
+		boolean ranked = selectiveSearch.ranksMoves(depth);
+		int boardSize = dummyBoard.getBoardSize();
+		for(int i=0; i<moveCount; i++) {
+			int move = moves[i];
+			if(move == hashMove) scores[i] = Integer.MAX_VALUE;
+			else if(move == killers[0]) scores[i] = Integer.MAX_VALUE - 1;
+			else if(move == killers[1]) scores[i] = Integer.MAX_VALUE - 2;
+			else if(ranked) {
+				int rank = SelectiveSearch.getThreatRank(dummyBoard, move % boardSize, move / boardSize, black);
+				scores[i] = rank << 24 | Math.min(colorHistory[move], (1 << 24) - 1);
+			}
+			else scores[i] = Math.min(colorHistory[move], Integer.MAX_VALUE - 3);
+		}
+		// Insertion sort, move lists are short and mostly in order already
+		for(int i=1; i<moveCount; i++) {
+			int move = moves[i];
+			int score = scores[i];
+			int j = i - 1;
+			while(j >= 0 && scores[j] < score) {
+				moves[j+1] = moves[j];
+				scores[j+1] = scores[j];
+				j--;
+			}
+			moves[j+1] = move;
+			scores[j+1] = score;
+		}
+	}
+	
+	// Moves the first moves of the list to its end.
+	private void rotateMoves(int[] moves, int moveCount, int shift) {
+		int[] scores = moveOrderScores[rootDepth];
+		System.arraycopy(moves, 0, scores, 0, moveCount);
+		for(int i=0; i<moveCount; i++) {
+			moves[i] = scores[(i + shift) % moveCount];
+		}
+	}
+	
+	// Remembers a move that caused a cutoff for ordering the moves of the next nodes.
+	// moveIndex: position of the move in the ordered move list
+	private void recordCutoff(int move, int moveIndex, int depth, int ply, boolean black) {
+		cutoffCount++;
+		if(moveIndex == 0) firstMoveCutoffCount++;
+		int[] killers = killerMoves[ply];
+		if(killers[0] != move) {
+			killers[1] = killers[0];
+			killers[0] = move;
+		}
+		int[] colorHistory = history[black ? 1 : 0];
+		colorHistory[move] = Math.min(colorHistory[move] + depth * depth, Integer.MAX_VALUE / 2);
+	}
+	
+	
+	// Evaluates a position where the game has ended like a leaf of the tree, without searching it.
+	private double evaluateEnd(Board dummyBoard, boolean blacksTurn) {
+		nodeCount++;
+		evaluationCount++;
+		return Minimax.evaluateBoardForWhite(dummyBoard, blacksTurn);
+	}
+	
+	/*
+	 * alpha : Best AI Move (Max)
+	 * beta : Best Player Move (Min)
+	 * ply : distance from the root, one more for every move made. With reduced moves it is not
+	 *       rootDepth - depth, so the killer moves are indexed by it.
+	 * returns: score of the node, the best move of the node is saved into bestMoves[depth]
+	 *          (y*boardSize+x, or -1 if the node has no moves)
+	 * */
+	private double minimaxSearchAB(int depth, int ply, Board dummyBoard, boolean max, double alpha, double beta) {
+
+		// Stop searching when the time is up, the caller drops the result of an aborted search.
+		if(++nodesSinceTimeCheck >= 1024) {
+			nodesSinceTimeCheck = 0;
+			if(stopRequested || System.nanoTime() > deadline) searchAborted = true;
+		}
+		if(searchAborted) return 0;
+		nodeCount++;
+
+		// Last depth (terminal node), evaluate the current board score.
+		if(depth == 0) {
+			bestMoves[0] = -1;
+			evaluationCount++;
+			return Minimax.evaluateBoardForWhite(dummyBoard, !max);
+		}
+		
+		int boardSize = dummyBoard.getBoardSize();
+		
+		// Same positions are reached with different move orders, so look this node up in the
+		// transposition table before expanding it. The player to move is a part of the position.
+		long hash = dummyBoard.getZobristHash() ^ (max ? 0 : Zobrist.BLACK_TO_MOVE);
+		int hashMove = -1;
+		if(depth == rootDepth && rootFirstMove >= 0) {
+			// Root node of an iteration, start with the best move of the previous iteration.
+			hashMove = rootFirstMove;
+		}
+		else {
+			ttProbeCount++;
+			if(tt.probe(hash, ttEntry)) {
+				ttHitCount++;
+				hashMove = TranspositionTable.moveOf(ttEntry);
+				if(TranspositionTable.depthOf(ttEntry) >= depth) {
+					double score = TranspositionTable.scoreOf(ttEntry);
+					int bound = TranspositionTable.boundOf(ttEntry);
+					// A stored bound can only be used if it is outside of the current alpha-beta window.
+					if(bound == TranspositionTable.EXACT ||
+					   (bound == TranspositionTable.LOWER_BOUND && score >= beta) ||
+					   (bound == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+						bestMoves[depth] = hashMove;
+						return score;
+					}
+				}
+			}
+		}
+		
+		// Generate all possible moves from this node of the Minimax Tree
+		/*
+		 *                  (Move 1)
+		 *	               /
+		 *  (Current Node) --- (Move 2)
+		 *				   \   ...
+		 *                  (Move N)
+		 */
+		int[] moves = moveBuffers[depth];
+		int moveCount;
+		if(ply == 0 && rootMoveCount > 0) {
+			// Repeated search of the root with a wider aspiration window, the moves are still in order.
+			moveCount = rootMoveCount;
+		}
+		else {
+			moveCount = dummyBoard.generateMoves(moves);
+			
+			// If there is no possible move left, treat this node as a terminal node and return the score.
+			if(moveCount == 0) {
+				bestMoves[depth] = -1;
+				evaluationCount++;
+				return Minimax.evaluateBoardForWhite(dummyBoard, !max);
+			}
+			
+			// Search the best move found for this position before first, it is the most likely one to cause a cutoff.
+			// Then try the moves that caused cutoffs in the other nodes.
+			orderMoves(dummyBoard, moves, moveCount, depth, hashMove, ply, !max);
+			if(ply == 0 && rootRotation > 0 && moveCount > 1) {
+				rotateMoves(moves, moveCount, rootRotation % moveCount);
+			}
+			if(ply == 0) rootMoveCount = moveCount;
+		}
+		
+		double alphaOrig = alpha;
+		double betaOrig = beta;
+		double bestScore;
+		int bestMove = -1;
+		
+		// Generate Minimax Tree and calculate node scores.
+		if(max) {
+			// Initialize the starting best move with -infinity.
+			bestScore = -1.0;
+			// Iterate for all possible moves that can be made.
+			for(int i=0; i<moveCount; i++) {
+				int move = moves[i];
+				int posX = move % boardSize;
+				int posY = move / boardSize;
+				int reduction = selectiveSearch.getReduction(dummyBoard, move, i, depth, ply, false);
+				if(reduction < 0) continue;
+
+				// Play the move on that temporary board without drawing anything
+				dummyBoard.addStoneNoGUI(posX, posY, false);
+				
+				// Call the minimax function for the next depth, to look for a minimum score.
+				// This function recursively generates new Minimax trees branching from this node 
+				// (if the depth > 0) and searches for the minimum white score in each of the sub trees.
+				// We will find the maximum score of this depth, among the minimum scores found in the
+				// lower depth.
+				// Principal variation search: the first move is most likely the best one, the others
+				// only have to be proven worse with a null window (alpha, alpha + the smallest step),
+				// which cuts off much earlier. Only a move that turns out better is searched again
+				// with the full window for its exact score.
+				double score;
+				if(depth > 1 && dummyBoard.hasFiveAt(posX, posY)) {
+					// The move wins the game, nothing can happen after it.
+					score = evaluateEnd(dummyBoard, true);
+				}
+				// Just above the leaves the window only matters on one side, there is nothing to gain.
+				else if(i == 0 || depth <= 2) {
+					score = minimaxSearchAB(depth-1, ply+1, dummyBoard, false, alpha, beta);
+				}
+				else {
+					score = minimaxSearchAB(depth-1-reduction, ply+1, dummyBoard, false, alpha, Math.nextUp(alpha));
+					// A reduced move that looks better than the best one so far is searched to the full depth.
+					if(reduction > 0 && score > alpha && !searchAborted) {
+						score = minimaxSearchAB(depth-1, ply+1, dummyBoard, false, alpha, Math.nextUp(alpha));
+					}
+					if(score > alpha && score < beta && !searchAborted) {
+						score = minimaxSearchAB(depth-1, ply+1, dummyBoard, false, alpha, beta);
+					}
+				}
+
+				// backtrack and remove
+				dummyBoard.removeStoneNoGUI(posX, posY);
+				if(searchAborted) return 0;
+
+				// Updating alpha (alpha value holds the maximum score)
+				// When searching for the minimum, if the score of a node is lower than the alpha 
+				// (max score of uncle nodes from one upper level) the whole subtree originating
+				// from that node will be discarded, since the maximizing player will choose the 
+				// alpha node over any node with a score lower than the alpha. 
+				if(score > alpha) {
+					alpha = score;
+				}
+				// Pruning with beta
+				// Beta value holds the minimum score among the uncle nodes from one upper level.
+				// We need to find a score lower than this beta score, because any score higher than
+				// beta will be eliminated by the minimizing player (upper level). If the score is
+				// higher than (or equal to) beta, break out of loop discarding any remaining nodes 
+				// and/or subtrees and return the last move.
+				if(score >= beta) {
+					recordCutoff(move, i, depth, ply, false);
+					tt.store(hash, score, TranspositionTable.LOWER_BOUND, depth, move);
+					bestMoves[depth] = move;
+					return score;
+				}
+
+				// Find the move with the maximum score.
+				if(score > bestScore) {
+					bestScore = score;
+					bestMove = move;
+				}
+			}
+		}
+		else {
+			// Initialize the starting best move using the first move in the list and +infinity score.
+			bestScore = 100_000_000.0;
+			bestMove = moves[0];
+			
+			// Iterate for all possible moves that can be made.
+			for(int i=0; i<moveCount; i++) {
+				int move = moves[i];
+				int posX = move % boardSize;
+				int posY = move / boardSize;
+				int reduction = selectiveSearch.getReduction(dummyBoard, move, i, depth, ply, true);
+				if(reduction < 0) continue;
+
+				// Play the move on that temporary board without drawing anything
+				dummyBoard.addStoneNoGUI(posX, posY, true);
+				
+				// Call the minimax function for the next depth, to look for a maximum score.
+				// This function recursively generates new Minimax trees branching from this node 
+				// (if the depth > 0) and searches for the maximum white score in each of the sub trees.
+				// We will find the minimum score of this depth, among the maximum scores found in the
+				// lower depth.
+				// Principal variation search with the null window (beta - the smallest step, beta).
+				double score;
+				if(depth > 1 && dummyBoard.hasFiveAt(posX, posY)) {
+					score = evaluateEnd(dummyBoard, false);
+				}
+				else if(i == 0 || depth <= 2) {
+					score = minimaxSearchAB(depth-1, ply+1, dummyBoard, true, alpha, beta);
+				}
+				else {
+					score = minimaxSearchAB(depth-1-reduction, ply+1, dummyBoard, true, Math.nextDown(beta), beta);
+					if(reduction > 0 && score < beta && !searchAborted) {
+						score = minimaxSearchAB(depth-1, ply+1, dummyBoard, true, Math.nextDown(beta), beta);
+					}
+					if(score > alpha && score < beta && !searchAborted) {
+						score = minimaxSearchAB(depth-1, ply+1, dummyBoard, true, alpha, beta);
+					}
+				}
+
+				dummyBoard.removeStoneNoGUI(posX, posY);
+				if(searchAborted) return 0;
+				
+				// Updating beta (beta value holds the minimum score)
+				// When searching for the maximum, if the score of a node is higher than the beta 
+				// (min score of uncle nodes from one upper level) the whole subtree originating
+				// from that node will be discarded, since the minimizing player will choose the 
+				// beta node over any node with a score higher than the beta. 
+				if(score < beta) {
+					beta = score;
+				}
+				// Pruning with alpha
+				// Alpha value holds the maximum score among the uncle nodes from one upper level.
+				// We need to find a score higher than this alpha score, because any score lower than
+				// alpha will be eliminated by the maximizing player (upper level). If the score is
+				// lower than (or equal to) alpha, break out of loop discarding any remaining nodes 
+				// and/or subtrees and return the last move.
+				if(score <= alpha) {
+					recordCutoff(move, i, depth, ply, true);
+					tt.store(hash, score, TranspositionTable.UPPER_BOUND, depth, move);
+					bestMoves[depth] = move;
+					return score;
+				}
+				
+				// Find the move with the minimum score.
+				if(score < bestScore) {
+					bestScore = score;
+					bestMove = move;
+				}
+			}
+		}
+
+		// Save the result, scores that did not get into the alpha-beta window are only bounds.
+		int bound = TranspositionTable.EXACT;
+		if(bestScore <= alphaOrig) bound = TranspositionTable.UPPER_BOUND;
+		else if(bestScore >= betaOrig) bound = TranspositionTable.LOWER_BOUND;
+		tt.store(hash, bestScore, bound, depth, bestMove);
+		
+		// Return the best move found in this depth
+		bestMoves[depth] = bestMove;
+		return bestScore;
+	}
+}
@@ -0,0 +1,99 @@
+// Settings of the selective search: how many moves of a node the minimax search looks at, and how deep.
+// Moves are ranked by a static threat score, whether they make or block a five, a four or a three.
+// Forcing moves are always searched to the full depth, the rest are quiet moves:
+// - Late move reductions: quiet moves late in the ordered move list are searched shallower. If one
+//   turns out better than the best move so far, it is searched again to the full depth.
+// - Candidate pruning: from a given ply on, only the first moves of the list are searched.
+public class SelectiveSearch {
+
+	// Searches every move to the full depth, like a plain alpha-beta search
+	public static final SelectiveSearch NONE = new SelectiveSearch(0, 0, 0, 0);
+
+	public static final int DEFAULT_CANDIDATE_LIMIT = 10;
+	public static final int DEFAULT_PRUNING_PLY = 2;
+	public static final int DEFAULT_LATE_MOVE_INDEX = 4;
+	public static final int DEFAULT_REDUCTION_DEPTH = 3;
+
+	// Threat ranks of a move, the highest that applies
+	public static final int RANK_FIVE = 7; // Makes five
+	public static final int RANK_BLOCK_FIVE = 6; // Stops a five of the opponent
+	public static final int RANK_FOUR = 5; // Makes a four
+	public static final int RANK_BLOCK_FOUR = 4; // Stops a four or an open three of the opponent
+	public static final int RANK_THREE = 3; // Makes a three
+	public static final int RANK_BLOCK_THREE = 2; // Stops a three of the opponent
+	public static final int RANK_TWO = 1; // Makes a two
+	// Moves of this rank or higher are forcing
+	public static final int RANK_FORCING = RANK_THREE;
+
+	private final int candidateLimit;
+	private final int pruningPly;
+	private final int lateMoveIndex;
+	private final int reductionDepth;
+
+	public SelectiveSearch() {
+		this(DEFAULT_CANDIDATE_LIMIT, DEFAULT_PRUNING_PLY, DEFAULT_LATE_MOVE_INDEX, DEFAULT_REDUCTION_DEPTH);
+	}
+	// candidateLimit: number of moves searched at a node from pruningPly on, forcing moves come on top. 0 searches all.
+	// pruningPly: distance from the root where the pruning starts, the root itself is never pruned
+	// lateMoveIndex: quiet moves from this index of the move list on are searched 1 ply shallower,
+	//                from 3 times the index on 2 plies shallower. 0 reduces none.
+	// reductionDepth: nodes with less depth left than this are not reduced
+	public SelectiveSearch(int candidateLimit, int pruningPly, int lateMoveIndex, int reductionDepth) {
+		this.candidateLimit = candidateLimit;
+		this.pruningPly = Math.max(1, pruningPly);
+		this.lateMoveIndex = lateMoveIndex;
+		this.reductionDepth = Math.max(3, reductionDepth);
+	}
+
+	// Checks whether the moves of a node with the given depth left are ordered by their threat rank.
+	// Nodes just above the leaves are neither reduced nor pruned: ranking their moves would cost
+	// about as much as evaluating the positions after them.
+	public boolean ranksMoves(int depth) {
+		return (candidateLimit > 0 || lateMoveIndex > 0) && depth >= 2;
+	}
+
+	// Decides how the move at the given index of the ordered move list of a node is searched.
+	// depth: depth left at the node, ply: distance of the node from the root
+	// black: player making the move
+	// returns: number of plies to search the move shallower, or -1 if it is not searched at all
+	public int getReduction(Board board, int move, int moveIndex, int depth, int ply, boolean black) {
+		boolean prune = candidateLimit > 0 && moveIndex >= candidateLimit && ply >= pruningPly && depth >= 2;
+		boolean reduce = lateMoveIndex > 0 && moveIndex >= lateMoveIndex && depth >= reductionDepth;
+		if(!prune && !reduce) return 0;
+		int boardSize = board.getBoardSize();
+		if(getThreatRank(board, move % boardSize, move / boardSize, black) >= RANK_FORCING) return 0;
+		if(prune) return -1;
+		// At least one ply is left for the move, and one more than the evaluation of the position
+		return Math.min(moveIndex >= 3 * lateMoveIndex ? 2 : 1, depth - 2);
+	}
+
+	// Returns the threat rank of placing a stone of the given player to the empty cell, see RANK_*.
+	// Only the five cell windows through the cell that have no stones of the other player are
+	// counted, so a three is not always an open three.
+	public static int getThreatRank(Board board, int posX, int posY, boolean black) {
+		int own = 0, opponent = 0;
+		for(int direction=Board.HORIZONTAL; direction<=Board.ANTI_DIAGONAL; direction++) {
+			int line = board.getLineIndex(direction, posX, posY);
+			int position = board.getLinePosition(direction, posX, posY);
+			int start = board.getLineViewStart(line, position);
+			long ownBits = board.getLineBits(line, black, start);
+			long opponentBits = board.getLineBits(line, !black, start);
+			long empty = board.getEmptyBits(line, start);
+			long ownFree = ownBits | empty;
+			long opponentFree = opponentBits | empty;
+			position -= start;
+			for(int i=Math.max(0, position - 4); i<=position && start+i+5<=board.getLineLength(line); i++) {
+				if((ownFree >>> i & 31) == 31) own = Math.max(own, Long.bitCount(ownBits >>> i & 31));
+				if((opponentFree >>> i & 31) == 31) opponent = Math.max(opponent, Long.bitCount(opponentBits >>> i & 31));
+			}
+		}
+		if(own >= 4) return RANK_FIVE;
+		if(opponent >= 4) return RANK_BLOCK_FIVE;
+		if(own == 3) return RANK_FOUR;
+		if(opponent == 3) return RANK_BLOCK_FOUR;
+		if(own == 2) return RANK_THREE;
+		if(opponent == 2) return RANK_BLOCK_THREE;
+		if(own == 1) return RANK_TWO;
+		return 0;
+	}
+}
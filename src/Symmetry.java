@@ -0,0 +1,72 @@
+// The 8 symmetries of the square board: 4 rotations, each with or without reflection.
+// Symmetric positions have the same score and the same best move turned the same way, so caches
+// keep a position once, in its canonical orientation: the orientation with the lowest hash.
+// Moves are stored in the canonical orientation and turned back to the board they are used on.
+// A symmetry is a number 0-7: bit 0 mirrors x, bit 1 mirrors y, then bit 2 swaps x and y.
+// 0 is the identity.
+public class Symmetry {
+
+	public static final int COUNT = 8;
+
+	private Symmetry() {
+	}
+
+	// returns: the cell (y*boardSize+x) the symmetry moves the given cell to
+	public static int transform(int symmetry, int cell, int boardSize) {
+		int posX = cell % boardSize;
+		int posY = cell / boardSize;
+		if((symmetry & 1) != 0) posX = boardSize - 1 - posX;
+		if((symmetry & 2) != 0) posY = boardSize - 1 - posY;
+		return (symmetry & 4) != 0 ? posX * boardSize + posY : posY * boardSize + posX;
+	}
+	// returns: the cell the symmetry moves to the given cell
+	public static int inverse(int symmetry, int cell, int boardSize) {
+		int posX = cell % boardSize;
+		int posY = cell / boardSize;
+		if((symmetry & 4) != 0) {
+			int swap = posX;
+			posX = posY;
+			posY = swap;
+		}
+		if((symmetry & 1) != 0) posX = boardSize - 1 - posX;
+		if((symmetry & 2) != 0) posY = boardSize - 1 - posY;
+		return posY * boardSize + posX;
+	}
+
+	// Computes the Zobrist hash of the board in all 8 orientations, hashes[0] is the hash of the
+	// board itself. The hashes are only needed where a cache is used, once per search, so they are
+	// computed from the stones instead of being updated with every move of the search.
+	public static void computeHashes(Board board, long[] hashes) {
+		int boardSize = board.getBoardSize();
+		for(int symmetry=0; symmetry<COUNT; symmetry++) {
+			hashes[symmetry] = Zobrist.sizeKey(boardSize);
+		}
+		for(int color=0; color<2; color++) {
+			boolean black = color == 1;
+			// Rows are the first lines of the board
+			for(int posY=board.nextOccupiedLine(0); posY>=0 && posY<boardSize; posY=board.nextOccupiedLine(posY+1)) {
+				for(int start=0; start<boardSize; start+=64) {
+					long row = board.getLineBits(posY, black, start);
+					while(row != 0) {
+						int cell = posY * boardSize + start + Long.numberOfTrailingZeros(row);
+						row &= row - 1;
+						for(int symmetry=0; symmetry<COUNT; symmetry++) {
+							int target = transform(symmetry, cell, boardSize);
+							hashes[symmetry] ^= Zobrist.stoneKey(target % boardSize, target / boardSize, black);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	// returns: the symmetry that turns the board into its canonical orientation, given the hashes
+	//          of computeHashes. A symmetric position has several, the first one is returned.
+	public static int canonicalSymmetry(long[] hashes) {
+		int canonical = 0;
+		for(int symmetry=1; symmetry<COUNT; symmetry++) {
+			if(hashes[symmetry] < hashes[canonical]) canonical = symmetry;
+		}
+		return canonical;
+	}
+}
@@ -0,0 +1,305 @@
+import java.util.Arrays;
+
+
+// Threat-space search: looks for a forced win made of threats the opponent has to answer.
+// First victory by continuous fours (VCF): every attacking move makes a four, so the opponent
+// has exactly one answer. Then victory by continuous threes (VCT): attacking moves can also make
+// an open three, and every defence of the opponent is tried.
+// Moves are played on the given board and taken back, the board is never copied.
+public class ThreatSearch {
+
+	// Maximum number of attacking moves in a winning sequence
+	public static final int DEFAULT_VCF_DEPTH = 10;
+	public static final int DEFAULT_VCT_DEPTH = 3;
+	// Maximum number of positions searched for each of VCF and VCT, keeps the search in milliseconds
+	public static final int DEFAULT_NODE_LIMIT = 20_000;
+
+	private final int vcfDepth;
+	private final int vctDepth;
+	private final int nodeLimit;
+
+	private Board board;
+	private boolean attackerBlack;
+	private int nodeCount;
+	// Buffers per depth, so that searching does not allocate:
+	// attacker's candidate moves, defender's replies, defender's candidate moves
+	private int[][] moveBuffers = new int[0][];
+	private int[][] replyBuffers = new int[0][];
+	private int[][] candidateBuffers = new int[0][];
+	// Cells found by the threat detection functions
+	private final int[] threatCells = new int[16];
+	// Cells collected by collectWindowCells, one bit per cell indexed as y*boardSize+x, and the
+	// indexes of the words that have any, so that only those are read and cleared
+	private long[] cellMarks = new long[0];
+	private int[] markedWords = new int[0];
+	private int markedWordCount;
+
+	public ThreatSearch() {
+		this(DEFAULT_VCF_DEPTH, DEFAULT_VCT_DEPTH, DEFAULT_NODE_LIMIT);
+	}
+	public ThreatSearch(int vcfDepth, int vctDepth, int nodeLimit) {
+		this.vcfDepth = vcfDepth;
+		this.vctDepth = vctDepth;
+		this.nodeLimit = nodeLimit;
+	}
+
+	// Looks for a forced win of the given player, who is to move. An immediate five is always found.
+	// returns: first move of the winning sequence (y*boardSize+x), or -1 if none was found
+	public int findWinningMove(Board board, boolean black) {
+		this.board = board;
+		this.attackerBlack = black;
+		int depth = Math.max(vcfDepth, vctDepth);
+		int cellCount = board.getBoardSize() * board.getBoardSize();
+		// The cells found are in a window with a stone, at most 4 cells from it on one of its 4 lines.
+		// Every attacking move adds at most 2 stones.
+		int bufferSize = board.isSparse() ? Math.min(cellCount, 32 * (board.getStoneCount() + 2 * depth + 2)) : cellCount;
+		if(moveBuffers.length <= depth || moveBuffers[0].length < bufferSize) {
+			moveBuffers = new int[depth + 1][bufferSize];
+			replyBuffers = new int[depth + 1][bufferSize];
+			candidateBuffers = new int[depth + 1][bufferSize];
+		}
+		if(cellMarks.length < (cellCount + 63) / 64) {
+			cellMarks = new long[(cellCount + 63) / 64];
+			markedWords = new int[cellMarks.length];
+		}
+
+		nodeCount = 0;
+		int move = attack(vcfDepth, false);
+		if(move < 0 && vctDepth > 0) {
+			int vcfNodes = nodeCount;
+			nodeCount = 0;
+			move = attack(vctDepth, true);
+			nodeCount += vcfNodes;
+		}
+		this.board = null;
+		return move;
+	}
+	// Returns the number of positions searched by the last call
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	// Attacker is to move.
+	// returns: a move that wins with threats in at most depth more attacking moves, or -1
+	private int attack(int depth, boolean withThrees) {
+		nodeCount++;
+		int boardSize = board.getBoardSize();
+
+		// A five wins right away
+		if(collectAllFiveCompletions(attackerBlack) > 0) return threatCells[0];
+		if(depth == 0 || nodeCount >= nodeLimit) return -1;
+
+		// If the defender has a four, it has to be blocked first. Two fours can not be blocked.
+		int defenderFours = collectAllFiveCompletions(!attackerBlack);
+		if(defenderFours >= 2) return -1;
+
+		// Only the cells in a five cell window with enough own stones and no opponent stones
+		// can make a four (3 stones) or an open three (2 stones)
+		int[] moves = moveBuffers[depth];
+		int moveCount;
+		if(defenderFours == 1) {
+			moves[0] = threatCells[0];
+			moveCount = 1;
+		}
+		else {
+			moveCount = collectWindowCells(attackerBlack, withThrees ? 2 : 3, moves);
+		}
+
+		for(int i=0; i<moveCount; i++) {
+			int move = moves[i];
+			int posX = move % boardSize;
+			int posY = move / boardSize;
+
+			board.addStoneNoGUI(posX, posY, attackerBlack);
+			boolean win = false;
+			int fives = collectFiveCompletions(move, attackerBlack);
+			if(fives >= 2) {
+				// Open four or double four, the defender can only block one of the cells
+				win = true;
+			}
+			else if(fives == 1) {
+				// Four, the defender has to block the only cell that completes it
+				int block = threatCells[0];
+				board.addStoneNoGUI(block % boardSize, block / boardSize, !attackerBlack);
+				win = attack(depth - 1, withThrees) >= 0;
+				board.removeStoneNoGUI(block % boardSize, block / boardSize);
+			}
+			else if(withThrees && makesOpenThree(move)) {
+				win = winsAgainstAllDefences(move, depth);
+			}
+			board.removeStoneNoGUI(posX, posY);
+
+			if(win) return move;
+			if(nodeCount >= nodeLimit) return -1;
+		}
+		return -1;
+	}
+
+	// Attacker has just made an open three with the given move, tries every answer of the defender:
+	// the cells that stop the three and every four the defender can make instead.
+	private boolean winsAgainstAllDefences(int move, int depth) {
+		int boardSize = board.getBoardSize();
+		int[] replies = replyBuffers[depth];
+		int replyCount = collectDefenceCells(move, replies);
+
+		int[] candidates = candidateBuffers[depth];
+		int candidateCount = collectWindowCells(!attackerBlack, 3, candidates);
+		for(int i=0; i<candidateCount; i++) {
+			if(!contains(replies, replyCount, candidates[i])) replies[replyCount++] = candidates[i];
+		}
+
+		for(int i=0; i<replyCount; i++) {
+			int reply = replies[i];
+			board.addStoneNoGUI(reply % boardSize, reply / boardSize, !attackerBlack);
+			boolean win = attack(depth - 1, true) >= 0;
+			board.removeStoneNoGUI(reply % boardSize, reply / boardSize);
+			if(!win) return false;
+		}
+		return replyCount > 0;
+	}
+
+	// Checks whether the stone at the given cell makes an open three: a cell on one of its lines
+	// where the next stone would make two ways to complete five.
+	private boolean makesOpenThree(int move) {
+		int boardSize = board.getBoardSize();
+		int posX = move % boardSize;
+		int posY = move / boardSize;
+		for(int direction=Board.HORIZONTAL; direction<=Board.ANTI_DIAGONAL; direction++) {
+			int line = board.getLineIndex(direction, posX, posY);
+			if(hasOpenThree(line, board.getLinePosition(direction, posX, posY))) return true;
+		}
+		return false;
+	}
+	private boolean hasOpenThree(int line, int position) {
+		int start = board.getLineViewStart(line, position);
+		long own = board.getLineBits(line, attackerBlack, start);
+		long empty = board.getEmptyBits(line, start);
+		long cells = empty & windowMask(position - start, 4);
+		while(cells != 0) {
+			long cell = cells & -cells;
+			cells ^= cell;
+			if(Long.bitCount(Board.fiveCompletions(own | cell, empty & ~cell)) >= 2) return true;
+		}
+		return false;
+	}
+
+	// Collects the cells that can stop the open threes made by the stone at the given cell into the
+	// given buffer: the empty cells of the five cell windows that hold the three.
+	private int collectDefenceCells(int move, int[] cells) {
+		int boardSize = board.getBoardSize();
+		int posX = move % boardSize;
+		int posY = move / boardSize;
+		int count = 0;
+		for(int direction=Board.HORIZONTAL; direction<=Board.ANTI_DIAGONAL; direction++) {
+			int line = board.getLineIndex(direction, posX, posY);
+			int position = board.getLinePosition(direction, posX, posY);
+			if(!hasOpenThree(line, position)) continue;
+			int start = board.getLineViewStart(line, position);
+			long own = board.getLineBits(line, attackerBlack, start);
+			long free = own | board.getEmptyBits(line, start);
+			long defences = 0;
+			position -= start;
+			for(int i=Math.max(0, position - 4); i<=position && start+i+5<=board.getLineLength(line); i++) {
+				if((free >>> i & 31) == 31 && Long.bitCount(own >>> i & 31) >= 3) defences |= 31L << i;
+			}
+			defences &= ~own;
+			while(defences != 0) {
+				cells[count++] = board.getLineCell(direction, line, start + Long.numberOfTrailingZeros(defences));
+				defences &= defences - 1;
+			}
+		}
+		return count;
+	}
+
+	// Collects the cells that complete five for the given player on the 4 lines through the cell
+	// into threatCells. returns: number of different cells
+	private int collectFiveCompletions(int move, boolean black) {
+		int boardSize = board.getBoardSize();
+		int posX = move % boardSize;
+		int posY = move / boardSize;
+		int count = 0;
+		for(int direction=Board.HORIZONTAL; direction<=Board.ANTI_DIAGONAL; direction++) {
+			int line = board.getLineIndex(direction, posX, posY);
+			count = addFiveCompletions(direction, line, black, count);
+		}
+		return count;
+	}
+	// Collects the cells that complete five for the given player anywhere on the board into threatCells.
+	// Stops after 2 cells. returns: number of different cells
+	private int collectAllFiveCompletions(boolean black) {
+		int count = 0;
+		for(int line=board.nextOccupiedLine(0); line>=0 && count < 2; line=board.nextOccupiedLine(line+1)) {
+			count = addFiveCompletions(board.getLineDirection(line), line, black, count);
+		}
+		return count;
+	}
+	private int addFiveCompletions(int direction, int line, boolean black, int count) {
+		for(int start=0; start+5<=board.getLineLength(line); start+=Board.LINE_CHUNK) {
+			long own = board.getLineBits(line, black, start);
+			if(Long.bitCount(own) < 4) continue;
+			long completions = Board.fiveCompletions(own, board.getEmptyBits(line, start));
+			while(completions != 0 && count < threatCells.length) {
+				int cell = board.getLineCell(direction, line, start + Long.numberOfTrailingZeros(completions));
+				completions &= completions - 1;
+				if(!contains(threatCells, count, cell)) threatCells[count++] = cell;
+			}
+		}
+		return count;
+	}
+
+	// Collects the empty cells that lie in a five cell window with at least minStones stones of
+	// the given player and no other stones, ordered by row and column.
+	// minStones = 3 finds every cell that makes a four, 2 also finds every cell that can make a three.
+	// returns: number of cells
+	private int collectWindowCells(boolean black, int minStones, int[] cells) {
+		int boardSize = board.getBoardSize();
+		for(int line=board.nextOccupiedLine(0); line>=0; line=board.nextOccupiedLine(line+1)) {
+			int length = board.getLineLength(line);
+			int direction = board.getLineDirection(line);
+			for(int start=0; start+5<=length; start+=Board.LINE_CHUNK) {
+				long own = board.getLineBits(line, black, start);
+				if(Long.bitCount(own) < minStones) continue;
+				long free = own | board.getEmptyBits(line, start);
+				long windows = 0;
+				for(int i=0; i<Board.LINE_CHUNK && start+i+5<=length; i++) {
+					if((free >>> i & 31) == 31 && Long.bitCount(own >>> i & 31) >= minStones) windows |= 31L << i;
+				}
+				windows &= ~own;
+				while(windows != 0) {
+					int cell = board.getLineCell(direction, line, start + Long.numberOfTrailingZeros(windows));
+					windows &= windows - 1;
+					if(cellMarks[cell >>> 6] == 0) markedWords[markedWordCount++] = cell >>> 6;
+					cellMarks[cell >>> 6] |= 1L << cell;
+				}
+			}
+		}
+		// Cells are numbered row by row, so the words in order give the cells ordered by row and column
+		Arrays.sort(markedWords, 0, markedWordCount);
+		int count = 0;
+		for(int i=0; i<markedWordCount; i++) {
+			int word = markedWords[i];
+			long marks = cellMarks[word];
+			while(marks != 0) {
+				cells[count++] = word * 64 + Long.numberOfTrailingZeros(marks);
+				marks &= marks - 1;
+			}
+			cellMarks[word] = 0;
+		}
+		markedWordCount = 0;
+		return count;
+	}
+
+	// Bits of a line within the given distance of a position
+	private static long windowMask(int position, int distance) {
+		long mask = -1L << Math.max(0, position - distance);
+		int end = position + distance + 1;
+		if(end < 64) mask &= (1L << end) - 1;
+		return mask;
+	}
+	private static boolean contains(int[] cells, int count, int cell) {
+		for(int i=0; i<count; i++) {
+			if(cells[i] == cell) return true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,119 @@
+import java.util.Arrays;
+
+
+public class TranspositionTable {
+
+	// Bound types of a stored score
+	public static final int EXACT = 0;
+	public static final int LOWER_BOUND = 1; // Search failed high, real score is >= stored score
+	public static final int UPPER_BOUND = 2; // Search failed low, real score is <= stored score
+
+	// Every entry takes 3 longs: [0] -> hash ^ score bits ^ packed info, [1] -> score bits, [2] -> packed info
+	// Packed info: bits 0-31 -> best move, 32-39 -> depth, 40-41 -> bound type, 42 -> used flag,
+	//              43-50 -> generation
+	// The table is shared by the search threads without locking. Storing the hash XOR'ed with the data
+	// lets a reader detect an entry that another thread was writing at the same time: the parts would
+	// not match, and the entry is treated as missing.
+	private static final int ENTRY_LONGS = 3;
+	private static final int BUCKET_LONGS = 2 * ENTRY_LONGS;
+	private static final long USED = 1L << 42;
+	private static final int GENERATION_SHIFT = 43;
+	private static final int GENERATION_MASK = 0xFF;
+
+	private long[] table;
+	private int bucketMask;
+	// Number of the current search, stored with every entry. The positions of the earlier moves of a
+	// game are not reached again, so their entries give way to the entries of the current search.
+	private int generation;
+
+	// Creates a table that uses at most the given amount of memory.
+	// Entries are stored in buckets of two: the first entry keeps the deepest result of the current
+	// generation, the second one is always replaced.
+	public TranspositionTable(int sizeInMB) {
+		resize(sizeInMB);
+	}
+
+	// Replaces the table with an empty one that uses at most the given amount of memory.
+	// Must not be called while a search uses the table.
+	public void resize(int sizeInMB) {
+		long buckets = Math.max(1, ((long)sizeInMB << 20) / (BUCKET_LONGS * 8));
+		// Round down to a power of two so that a bucket can be found with a mask
+		int bucketCount = (int)Long.highestOneBit(Math.min(buckets, Integer.MAX_VALUE / BUCKET_LONGS));
+		table = null; // The old table can be collected before the new one is allocated
+		table = new long[bucketCount * BUCKET_LONGS];
+		bucketMask = bucketCount - 1;
+	}
+
+	// Looks for the given position in the table.
+	// If found, entry[0] is filled with the score bits and entry[1] with the packed info.
+	public boolean probe(long hash, long[] entry) {
+		int base = ((int)hash & bucketMask) * BUCKET_LONGS;
+		for(int i=base; i<base+BUCKET_LONGS; i+=ENTRY_LONGS) {
+			long score = table[i+1];
+			long info = table[i+2];
+			if((table[i] ^ score ^ info) == hash && (info & USED) != 0) {
+				entry[0] = score;
+				entry[1] = info;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public void store(long hash, double score, int bound, int depth, int move) {
+		int base = ((int)hash & bucketMask) * BUCKET_LONGS;
+		long oldScore = table[base+1];
+		long oldInfo = table[base+2];
+		boolean sameHash = (table[base] ^ oldScore ^ oldInfo) == hash;
+		// Keep the deeper result of another position of this generation in the first entry, use the
+		// second one instead
+		int slot = base;
+		if((oldInfo & USED) != 0 && !sameHash && depthOf(oldInfo) > depth && generationOf(oldInfo) == generation) {
+			slot = base + ENTRY_LONGS;
+		}
+		long scoreBits = Double.doubleToRawLongBits(score);
+		long info = (move & 0xFFFFFFFFL) | ((long)(depth & 0xFF) << 32) | ((long)bound << 40) | USED |
+				((long)generation << GENERATION_SHIFT);
+		table[slot] = hash ^ scoreBits ^ info;
+		table[slot+1] = scoreBits;
+		table[slot+2] = info;
+	}
+
+	// Starts a new generation, called when the position of the game has changed. Entries of the
+	// earlier generations are still found, but they can be replaced by shallower ones.
+	public void newGeneration() {
+		generation = (generation + 1) & GENERATION_MASK;
+	}
+
+	public void clear() {
+		Arrays.fill(table, 0L);
+	}
+
+	// Returns the number of entries the table can hold.
+	public int capacity() {
+		return table.length / ENTRY_LONGS;
+	}
+
+	public static double scoreOf(long[] entry) {
+		return Double.longBitsToDouble(entry[0]);
+	}
+	public static int moveOf(long[] entry) {
+		return (int)entry[1];
+	}
+	// Replaces the best move of an entry read with probe.
+	public static void setMove(long[] entry, int move) {
+		entry[1] = (entry[1] & ~0xFFFFFFFFL) | (move & 0xFFFFFFFFL);
+	}
+	public static int depthOf(long[] entry) {
+		return depthOf(entry[1]);
+	}
+	public static int boundOf(long[] entry) {
+		return (int)(entry[1] >>> 40) & 3;
+	}
+	public static int depthOf(long info) {
+		return (int)(info >>> 32) & 0xFF;
+	}
+	private static int generationOf(long info) {
+		return (int)(info >>> GENERATION_SHIFT) & GENERATION_MASK;
+	}
+}
@@ -0,0 +1,30 @@
+public class Zobrist {
+
+	// Key that is XOR'ed into a position hash when it is black's turn to move.
+	// (The same stones with a different player to move is a different search node.)
+	public static final long BLACK_TO_MOVE = mix(0x5DEECE66DL);
+
+	private Zobrist() {
+	}
+
+	// Returns the random key of a stone at the given cell.
+	// Keys are derived from the coordinates instead of a random table, so that hashes
+	// are the same for every board size and every run of the program.
+	public static long stoneKey(int posX, int posY, boolean black) {
+		return mix(((long)posX << 33) ^ ((long)posY << 2) ^ (black ? 2 : 1));
+	}
+
+	// Returns the key an empty board of the given size starts with.
+	// This keeps positions on boards of different sizes apart.
+	public static long sizeKey(int boardSize) {
+		return mix(~(long)boardSize);
+	}
+
+	// SplitMix64 finalizer, spreads the input bits over the whole 64 bit key.
+	private static long mix(long z) {
+		z += 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}